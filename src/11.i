@@ -0,0 +1,11 @@
+var t : real is 1.0;
+print(t / 3.0);
+var u : real is 3.0;
+print(u * 0.1);
+var r : real is 2.5;
+print(r * 10000000000.0);
+var h : real is 0.5;
+print(h + 0.25);
+var big : integer is 16777217;
+var w : real is big;
+print(w);
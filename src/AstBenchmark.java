@@ -0,0 +1,153 @@
+import flat.FlatAst;
+import flat.FlatAstAdapter;
+import flat.NodeKind;
+import node.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Compares the retained memory and traversal speed of the object AST against a {@link FlatAst}, and
+ * pattern-switch traversal of the object AST against {@link Visitor} dispatch.
+ * Usage: java AstBenchmark [sourceFile] [copies]
+ */
+public class AstBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? Files.readString(Paths.get(args[0])) : sampleSources();
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String input = source.repeat(copies);
+        Lexer lexer = new Lexer();
+
+        ProgramNode program = new Parser(lexer.stream(input)).parse();
+        FlatAst ast = FlatAstAdapter.toFlat(program);
+        if (countIdentifiers(program) != countIdentifiers(ast)) {
+            throw new IllegalStateException("Flat AST does not match the object AST");
+        }
+        IdentifierCounter counter = new IdentifierCounter();
+        if (countIdentifiers(program) != counter.count(program)) {
+            throw new IllegalStateException("Visitor traversal does not match the pattern switch");
+        }
+        System.out.printf("Input: %d chars, %d nodes%n", input.length(), ast.size());
+
+        long treeBytes = retainedBytes(() -> new Parser(lexer.stream(input)).parse());
+        long flatBytes = retainedBytes(() -> FlatAstAdapter.toFlat(program));
+        System.out.printf("Object AST: %6.1f bytes/node%n", treeBytes / (double) ast.size());
+        System.out.printf("Flat AST:   %6.1f bytes/node%n", flatBytes / (double) ast.size());
+
+        report("objects", measure(() -> countIdentifiers(program)));
+        report("visitor", measure(() -> counter.count(program)));
+        report("flat", measure(() -> countIdentifiers(ast)));
+    }
+
+    private static long retainedBytes(Supplier<Object> allocation) {
+        Runtime runtime = Runtime.getRuntime();
+        settle();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        Object retained = allocation.get();
+        settle();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        Objects.requireNonNull(retained);
+        return after - before;
+    }
+
+    private static void settle() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+    }
+
+    private static String sampleSources() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            Path path = Paths.get(String.format("src/%d.i", i));
+            if (Files.exists(path)) {
+                builder.append(Files.readString(path)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static long measure(Runnable run) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("%-8s %10.3f ms per full traversal%n", name, nanos / 1e6);
+    }
+
+    private static int countIdentifiers(FlatAst ast) {
+        int count = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            if (ast.kind(node) == NodeKind.IDENTIFIER) count++;
+        }
+        return count;
+    }
+
+    private static int countIdentifiers(List<? extends ASTNode> nodes) {
+        int count = 0;
+        if (nodes != null) {
+            for (ASTNode node : nodes) count += countIdentifiers(node);
+        }
+        return count;
+    }
+
+    private static int countIdentifiers(ASTNode node) {
+        return switch (node) {
+            case null -> 0;
+            case IdentifierNode identifier -> 1;
+            case ProgramNode program -> countIdentifiers(program.statements);
+            case VarDeclarationNode var -> countIdentifiers(var.type) + countIdentifiers(var.expression);
+            case AssignmentNode assignment -> countIdentifiers(assignment.lvalue) + countIdentifiers(assignment.expression);
+            case IfStatementNode ifNode -> countIdentifiers(ifNode.condition) + countIdentifiers(ifNode.thenStatements)
+                    + countIdentifiers(ifNode.elsifStatements) + countIdentifiers(ifNode.elseStatements);
+            case WhileLoopNode whileNode -> countIdentifiers(whileNode.condition) + countIdentifiers(whileNode.body);
+            case ForLoopNode forNode -> countIdentifiers(forNode.startExpression) + countIdentifiers(forNode.endExpression)
+                    + countIdentifiers(forNode.body);
+            case RoutineDeclarationNode routine -> countIdentifiers(routine.params) + countIdentifiers(routine.returnType)
+                    + countIdentifiers(routine.body);
+            case ParamNode param -> countIdentifiers(param.type);
+            case ReturnStatementNode returnNode -> countIdentifiers(returnNode.expression);
+            case PrintStatementNode print -> countIdentifiers(print.expression);
+            case RecordDeclarationNode record -> countIdentifiers(record.fields);
+            case ArrayDeclarationNode array -> countIdentifiers(array.type);
+            case BinaryOperationNode binary -> countIdentifiers(binary.left) + countIdentifiers(binary.right);
+            case UnaryOperationNode unary -> countIdentifiers(unary.operand);
+            case LValueNode lvalue -> countIdentifiers(lvalue.base) + countIdentifiers(lvalue.index);
+            case FunctionCallNode call -> countIdentifiers(call.arguments);
+            default -> 0;
+        };
+    }
+
+    private static final class IdentifierCounter extends TreeWalker {
+        private int count;
+
+        int count(ASTNode node) {
+            count = 0;
+            walk(node);
+            return count;
+        }
+
+        @Override
+        public Void visit(IdentifierNode node) {
+            count++;
+            return null;
+        }
+    }
+}
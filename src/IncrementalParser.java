@@ -0,0 +1,124 @@
+import diagnostics.Diagnostics;
+import node.ASTNode;
+import node.ProgramNode;
+import tokens.Span;
+import tokens.TokenBuffer;
+import tokens.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the tokens and the AST of one source file up to date across text edits. An edit re-lexes
+ * only the token window around it and re-parses only the top-level statements (routine and record
+ * declarations included) whose tokens changed; every other top-level subtree is reused as is.
+ * <p>
+ * Errors are kept per statement, so a re-parse replaces those of the statements it re-parsed. The lexer
+ * has no diagnostics of its own and keeps unknown characters as UNKNOWN tokens, which the statement
+ * holding them reports.
+ */
+public class IncrementalParser {
+    private final Lexer lexer = new Lexer(null);
+    private final StringBuilder source;
+    private final TokenBuffer tokens;
+    private final List<Segment> segments = new ArrayList<>();
+    private int lastReparsed;
+
+    public IncrementalParser(CharSequence text) {
+        source = new StringBuilder(text);
+        tokens = lexer.tokenize(source);
+        for (int from = 0; !TopLevelSplitter.isEof(tokens, from); ) {
+            int to = TopLevelSplitter.statementEnd(tokens, from);
+            segments.add(parseSegment(from, to));
+            from = to;
+        }
+        lastReparsed = segments.size();
+    }
+
+    public ProgramNode program() {
+        List<ASTNode> statements = new ArrayList<>();
+        for (Segment segment : segments) {
+            statements.addAll(segment.nodes);
+        }
+        return new ProgramNode(statements);
+    }
+
+    /**
+     * Errors of the current text, in source order.
+     */
+    public Diagnostics diagnostics() {
+        Diagnostics diagnostics = new Diagnostics();
+        for (Segment segment : segments) {
+            diagnostics.addAll(segment.diagnostics);
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Replaces {@code removedLength} characters at {@code offset} with {@code insertedText} and
+     * returns the updated program.
+     */
+    public ProgramNode edit(int offset, int removedLength, String insertedText) {
+        source.replace(offset, offset + removedLength, insertedText);
+        TokenBuffer.Edit edit = lexer.relex(tokens, offset, removedLength, insertedText.length());
+        int shift = edit.newTo() - edit.oldTo();
+
+        int first = 0;
+        while (first < segments.size() && segments.get(first).to <= edit.from()) first++;
+
+        // Old segments from `reused` on start after the changed tokens and can be kept if a new boundary lines up
+        int reused = first;
+        while (reused < segments.size() && segments.get(reused).from < edit.oldTo()) reused++;
+
+        List<Segment> reparsed = new ArrayList<>();
+        int from = first < segments.size() ? segments.get(first).from : edit.from();
+        while (!TopLevelSplitter.isEof(tokens, from)) {
+            while (reused < segments.size() && segments.get(reused).from + shift < from) reused++;
+            if (reused < segments.size() && segments.get(reused).from + shift == from) {
+                break;
+            }
+            int to = TopLevelSplitter.statementEnd(tokens, from);
+            reparsed.add(parseSegment(from, to));
+            from = to;
+        }
+        if (TopLevelSplitter.isEof(tokens, from)) {
+            reused = segments.size();
+        }
+
+        List<Segment> tail = new ArrayList<>();
+        for (Segment segment : segments.subList(reused, segments.size())) {
+            tail.add(new Segment(segment.from + shift, segment.to + shift, segment.nodes, segment.diagnostics));
+        }
+        segments.subList(first, segments.size()).clear();
+        segments.addAll(reparsed);
+        segments.addAll(tail);
+        lastReparsed = reparsed.size();
+        return program();
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    /**
+     * Number of top-level statements parsed by the last edit (or by the initial parse).
+     */
+    public int lastReparsedCount() {
+        return lastReparsed;
+    }
+
+    private Segment parseSegment(int from, int to) {
+        Diagnostics diagnostics = new Diagnostics();
+        for (int i = from; i < to; i++) {
+            if (tokens.type(i) == TokenType.UNKNOWN) {
+                diagnostics.error("Unknown token found: " + tokens.text(i), new Span(tokens.line(i), tokens.start(i), tokens.end(i)));
+            }
+        }
+        Parser parser = new Parser(tokens.stream(from, to, Lexer.DEFAULT_LOOKAHEAD), diagnostics);
+        return new Segment(from, to, parser.parse().statements, diagnostics);
+    }
+
+    // Top-level statement occupying tokens [from, to), with the errors found in them
+    private record Segment(int from, int to, List<ASTNode> nodes, Diagnostics diagnostics) {
+    }
+}
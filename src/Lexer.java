@@ -1,102 +1,645 @@
+import diagnostics.Diagnostics;
+import symbols.Interner;
+import symbols.SymbolTable;
+import tokens.LookaheadTokenStream;
 import tokens.Span;
 import tokens.Token;
+import tokens.TokenBuffer;
+import tokens.TokenStream;
 import tokens.TokenType;
 
 import java.util.*;
-import java.util.regex.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.nio.CharBuffer;
 import java.nio.file.*;
 import java.io.*;
 
 public class Lexer {
-    private static final Map<TokenType, String> tokenPatterns = new LinkedHashMap<>();
-    private static final Set<String> keywords = new HashSet<>();
+    public static final int DEFAULT_LOOKAHEAD = 2;
+    // Below this many characters per chunk a parallel lex costs more than it saves
+    private static final int MIN_CHUNK_LENGTH = 1 << 16;
+
+    // Keywords bucketed by their first character, with the token type at the same position
+    private static final String[][] keywordsByFirstChar = new String[128][];
+    private static final TokenType[][] keywordTypesByFirstChar = new TokenType[128][];
 
     static {
-        keywords.addAll(Arrays.asList(
+        for (String keyword : Arrays.asList(
                 "var", "type", "routine", "is", "end", "record", "array", "while", "loop", "for", "to",
                 "if", "then", "else", "elsif", "true", "false", "print", "return", "in"
-        ));
-
-        tokenPatterns.put(TokenType.STRING, "\"(\\\\.|[^\"\\\\])*\"");  // Strings
-        tokenPatterns.put(TokenType.NUMBER, "\\d+(\\.\\d+)?");         // Numbers (integers and reals)
-        tokenPatterns.put(TokenType.IDENTIFIER, "[a-zA-Z_][a-zA-Z0-9_]*"); // Identifiers
-
-        tokenPatterns.put(TokenType.PLUS, "\\+");
-        tokenPatterns.put(TokenType.RANGE_OPERATOR, "\\.\\.");
-        tokenPatterns.put(TokenType.MINUS, "-");
-        tokenPatterns.put(TokenType.STAR, "\\*");
-        tokenPatterns.put(TokenType.SLASH, "/");
-        tokenPatterns.put(TokenType.MOD, "%");
-        tokenPatterns.put(TokenType.ASSIGN, ":=");
-        tokenPatterns.put(TokenType.EQUAL, "=");
-        tokenPatterns.put(TokenType.NOT_EQUAL, "!=");
-        tokenPatterns.put(TokenType.GREATER_EQUAL, ">=");
-        tokenPatterns.put(TokenType.LESS_EQUAL, "<=");
-        tokenPatterns.put(TokenType.LESS, "<");
-        tokenPatterns.put(TokenType.GREATER, ">");
-        tokenPatterns.put(TokenType.LPAREN, "\\(");
-        tokenPatterns.put(TokenType.RPAREN, "\\)");
-        tokenPatterns.put(TokenType.LBRACKET, "\\[");
-        tokenPatterns.put(TokenType.RBRACKET, "\\]");
-        tokenPatterns.put(TokenType.DOT, "\\.");
-        tokenPatterns.put(TokenType.COMMA, ",");
-        tokenPatterns.put(TokenType.COLON, ":");
-        tokenPatterns.put(TokenType.SEMICOLON, ";");
-
-        tokenPatterns.put(TokenType.AND, "\\&\\&");
-        tokenPatterns.put(TokenType.OR, "\\|\\|");
-        tokenPatterns.put(TokenType.NOT, "\\!");
-
-        tokenPatterns.put(TokenType.WHITESPACE, "\\s+");
-
-        tokenPatterns.put(TokenType.EOF, "$");
-        tokenPatterns.put(TokenType.UNKNOWN, ".");
+        )) {
+            char first = keyword.charAt(0);
+            String[] bucket = keywordsByFirstChar[first];
+            TokenType[] types = keywordTypesByFirstChar[first];
+            int size = bucket == null ? 0 : bucket.length;
+            bucket = bucket == null ? new String[1] : Arrays.copyOf(bucket, size + 1);
+            types = types == null ? new TokenType[1] : Arrays.copyOf(types, size + 1);
+            bucket[size] = keyword;
+            types[size] = TokenType.valueOf(keyword.toUpperCase());
+            keywordsByFirstChar[first] = bucket;
+            keywordTypesByFirstChar[first] = types;
+        }
+    }
+
+    private final Diagnostics diagnostics;
+
+    public Lexer() {
+        this(new Diagnostics());
+    }
+
+    public Lexer(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public Diagnostics diagnostics() {
+        return diagnostics;
     }
 
     public List<Token> lex(String input) {
-        List<Token> tokens = new ArrayList<>();
-        StringBuilder tokenPatternBuilder = new StringBuilder();
+        return tokenize(input).asList();
+    }
 
-        for (Map.Entry<TokenType, String> entry : tokenPatterns.entrySet()) {
-            tokenPatternBuilder.append(String.format("|(%s)", entry.getValue()));
+    /**
+     * Lexes the whole of {@code source} into a compact {@link TokenBuffer}; token texts stay in the source.
+     */
+    public TokenBuffer tokenize(CharSequence source) {
+        TokenBuffer buffer = new TokenBuffer(source);
+        Scan scan = new Scan(new SequenceSource(source), diagnostics);
+        TokenType type;
+        do {
+            type = scan.scanToken();
+            buffer.add(type, scan.tokenStart, scan.tokenEnd, scan.tokenLine, scan.tokenSymbol);
+        } while (type != TokenType.EOF);
+        buffer.trimToSize();
+        return buffer;
+    }
+
+    /**
+     * Brings {@code tokens} up to date after the text at {@code [editStart, editStart + removedLength)}
+     * of its source was replaced by {@code insertedLength} characters (the source must already hold
+     * the new text). Scanning restarts at the last token boundary before the edit and stops as soon
+     * as a new token starts where an old token did in the unchanged text after the edit; from there on
+     * the old tokens are kept and only shifted.
+     */
+    public TokenBuffer.Edit relex(TokenBuffer tokens, int editStart, int removedLength, int insertedLength) {
+        int delta = insertedLength - removedLength;
+        int from = Math.max(0, tokens.indexEndingAtOrAfter(editStart) - 1);
+        int restart = from == 0 ? 0 : tokens.start(from);
+        int restartLine = from == 0 ? 1 : tokens.line(from);
+
+        TokenBuffer replacement = new TokenBuffer(tokens.source(), 16);
+        Scan scan = new Scan(new SequenceSource(tokens.source()), restart, restartLine, diagnostics);
+        int old = from;
+        while (true) {
+            TokenType type = scan.scanToken();
+            if (scan.tokenStart >= editStart + insertedLength) {
+                while (old < tokens.size() && tokens.start(old) + delta < scan.tokenStart) old++;
+                if (old < tokens.size()
+                        && tokens.start(old) >= editStart + removedLength
+                        && tokens.start(old) + delta == scan.tokenStart) {
+                    return tokens.splice(from, old, replacement, delta, scan.tokenLine - tokens.line(old));
+                }
+            }
+            replacement.add(type, scan.tokenStart, scan.tokenEnd, scan.tokenLine, scan.tokenSymbol);
+            if (type == TokenType.EOF) {
+                return tokens.splice(from, tokens.size(), replacement, delta, 0);
+            }
         }
-        Pattern tokenPattern = Pattern.compile(tokenPatternBuilder.substring(1));
+    }
 
-        Matcher matcher = tokenPattern.matcher(input);
-        long lineNum = 1;
+    /**
+     * Lexes {@code source} on {@code pool} and returns exactly what {@link #tokenize} would. The source
+     * is cut into chunks right after newlines and every chunk is lexed on its own, assuming its first
+     * character is outside any token. The stitching pass proves that assumption: a chunk is taken as is
+     * when the previous chunk's last token ended before it; otherwise a multi-line string literal runs
+     * across the cut, and the chunk is re-lexed from the end of that token until it lines up with the
+     * speculative tokens again. Chunk line numbers are offset by the newline count of the preceding
+     * chunks, and chunk-local symbol ids are interned globally in token order, so ids match too.
+     */
+    public TokenBuffer tokenizeParallel(CharSequence source, ForkJoinPool pool) {
+        int length = source.length();
+        int chunkCount = Math.min(pool.getParallelism() * 4, length / MIN_CHUNK_LENGTH);
+        if (chunkCount < 2) {
+            return tokenize(source);
+        }
 
-        while (matcher.find()) {
-            int begin = matcher.start();
-            int end = matcher.end();
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= chunkCount && start < length; i++) {
+            int end = i == chunkCount ? length : nextLineStart(source, Math.max(start + 1, (int) ((long) length * i / chunkCount)));
+            chunks.add(new Chunk(source, start, end == length ? length + 1 : end));
+            start = end;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            tasks.add(ForkJoinTask.adapt(chunk::lex));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
 
-            Span span = new Span(lineNum, begin, end);
-            String matchedText = matcher.group();
-            TokenType type = TokenType.UNKNOWN;
+        int lineBase = 1;
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            chunk.lineBase = lineBase;
+            lineBase += chunk.newlines;
+            total += chunk.tokens.size();
+        }
 
-            for (Map.Entry<TokenType, String> entry : tokenPatterns.entrySet()) {
-                if (matchedText.matches(entry.getValue())) {
-                    type = entry.getKey();
-                    break;
+        TokenBuffer result = new TokenBuffer(source, total);
+        int lastEnd = 0;
+        for (Chunk chunk : chunks) {
+            int from = 0;
+            if (lastEnd > chunk.start) {
+                from = relexAcross(result, chunk, chunks, lastEnd);
+            }
+            for (int i = from; i < chunk.tokens.size(); i++) {
+                chunk.copyToken(i, result, diagnostics);
+            }
+            if (result.size() > 0) {
+                lastEnd = result.end(result.size() - 1);
+            }
+        }
+        result.trimToSize();
+        return result;
+    }
+
+    public TokenBuffer tokenizeParallel(CharSequence source) {
+        return tokenizeParallel(source, ForkJoinPool.commonPool());
+    }
+
+    // Lexes sequentially from lastEnd until a token starts where one of the chunk's own tokens does,
+    // and returns the index of that token in the chunk (or the chunk size if they never line up)
+    private int relexAcross(TokenBuffer result, Chunk chunk, List<Chunk> chunks, int lastEnd) {
+        Scan scan = new Scan(new SequenceSource(chunk.source), lastEnd, lineAt(chunks, lastEnd), diagnostics);
+        int index = 0;
+        while (true) {
+            TokenType type = scan.scanToken();
+            if (scan.tokenStart >= chunk.limit) {
+                return chunk.tokens.size();
+            }
+            while (index < chunk.tokens.size() && chunk.tokens.start(index) < scan.tokenStart) index++;
+            if (index < chunk.tokens.size() && chunk.tokens.start(index) == scan.tokenStart) {
+                return index;
+            }
+            result.add(type, scan.tokenStart, scan.tokenEnd, scan.tokenLine, scan.tokenSymbol);
+            if (type == TokenType.EOF) {
+                return chunk.tokens.size();
+            }
+        }
+    }
+
+    private static int lineAt(List<Chunk> chunks, int pos) {
+        for (Chunk chunk : chunks) {
+            if (pos < chunk.limit) {
+                return chunk.lineBase + countLines(chunk.source, chunk.start, pos);
+            }
+        }
+        throw new IllegalArgumentException("Offset " + pos + " is past the end of the source");
+    }
+
+    private static int nextLineStart(CharSequence source, int from) {
+        int length = source.length();
+        for (int i = from; i < length; i++) {
+            if (source.charAt(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    // Counted the way Scan counts them: a lone '\r' or a '\n'
+    private static int countLines(CharSequence source, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= source.length() || source.charAt(i + 1) != '\n'))) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    public TokenStream stream(Reader reader) {
+        return stream(reader, DEFAULT_LOOKAHEAD);
+    }
+
+    /**
+     * Lexes {@code source} lazily; token texts are sliced from it only when the parser asks for them.
+     */
+    public TokenStream stream(CharSequence source) {
+        Scan scan = new Scan(new SequenceSource(source), diagnostics);
+        return new LookaheadTokenStream(DEFAULT_LOOKAHEAD) {
+            @Override
+            protected Token produce() {
+                TokenType type = scan.scanToken();
+                return new Token(type, source, scan.tokenStart, scan.tokenEnd, scan.tokenLine, scan.tokenSymbol);
+            }
+        };
+    }
+
+    /**
+     * Lexes {@code reader} lazily: a token is scanned only when the parser looks that far ahead.
+     */
+    public TokenStream stream(Reader reader, int lookahead) {
+        CharWindow window = new CharWindow(reader);
+        Scan scan = new Scan(window, diagnostics);
+        return new LookaheadTokenStream(lookahead) {
+            @Override
+            protected Token produce() {
+                TokenType type = scan.scanToken();
+                String text = type == TokenType.IDENTIFIER
+                        ? SymbolTable.name(scan.tokenSymbol)
+                        : window.text(scan.tokenStart, scan.tokenEnd);
+                return new Token(type, text, scan.tokenStart, scan.tokenLine, scan.tokenSymbol);
+            }
+        };
+    }
+
+    private interface CharSource {
+        /**
+         * Returns the character at {@code pos}, or -1 past the end of input.
+         */
+        int charAt(int pos);
+
+        /**
+         * Signals that characters before {@code pos} will not be asked for again.
+         */
+        void release(int pos);
+
+        String text(int begin, int end);
+
+        int intern(int begin, int end);
+    }
+
+    private static final class Scan {
+        private final CharSource chars;
+        private int pos;
+        private int lineNum;
+        int tokenStart;
+        int tokenEnd;
+        int tokenLine;
+        int tokenSymbol;
+        // Unknown characters are reported here and skipped; without it they come back as UNKNOWN
+        // tokens, which speculative chunk scans leave for the stitcher to report
+        private final Diagnostics diagnostics;
+
+        Scan(CharSource chars, Diagnostics diagnostics) {
+            this(chars, 0, 1, diagnostics);
+        }
+
+        Scan(CharSource chars, int pos, int lineNum, Diagnostics diagnostics) {
+            this.chars = chars;
+            this.diagnostics = diagnostics;
+            this.pos = pos;
+            this.lineNum = lineNum;
+        }
+
+        TokenType scanToken() {
+            while (true) {
+                chars.release(pos);
+                int begin = pos;
+                int beginLine = lineNum;
+                int c = chars.charAt(pos);
+                TokenType type;
+
+                if (c < 0) {
+                    tokenStart = tokenEnd = pos;
+                    tokenLine = lineNum;
+                    tokenSymbol = SymbolTable.NO_SYMBOL;
+                    return TokenType.EOF;
+                }
+
+                switch (c) {
+                    case ' ', '\t', '\n', '\u000B', '\f', '\r' -> {
+                        while (isWhitespace(c)) {
+                            countLine(c);
+                            c = chars.charAt(++pos);
+                        }
+                        continue;
+                    }
+                    case '"' -> {
+                        int end = scanString(pos);
+                        if (end < 0) {
+                            type = TokenType.UNKNOWN;
+                            pos++;
+                        } else {
+                            type = TokenType.STRING;
+                            pos = end;
+                        }
+                    }
+                    case '+' -> { type = TokenType.PLUS; pos++; }
+                    case '-' -> { type = TokenType.MINUS; pos++; }
+                    case '*' -> { type = TokenType.STAR; pos++; }
+                    case '/' -> {
+                        if (chars.charAt(pos + 1) == '/') {
+                            // COMMENT: runs to the end of the line and is skipped like whitespace
+                            pos += 2;
+                            for (c = chars.charAt(pos); c >= 0 && c != '\n' && c != '\r'; c = chars.charAt(pos)) pos++;
+                            continue;
+                        }
+                        type = TokenType.SLASH;
+                        pos++;
+                    }
+                    case '%' -> { type = TokenType.MOD; pos++; }
+                    case '=' -> { type = TokenType.EQUAL; pos++; }
+                    case '(' -> { type = TokenType.LPAREN; pos++; }
+                    case ')' -> { type = TokenType.RPAREN; pos++; }
+                    case '[' -> { type = TokenType.LBRACKET; pos++; }
+                    case ']' -> { type = TokenType.RBRACKET; pos++; }
+                    case ',' -> { type = TokenType.COMMA; pos++; }
+                    case ';' -> { type = TokenType.SEMICOLON; pos++; }
+                    case '.' -> type = twoCharToken('.', TokenType.RANGE_OPERATOR, TokenType.DOT);
+                    case ':' -> type = twoCharToken('=', TokenType.ASSIGN, TokenType.COLON);
+                    case '!' -> type = twoCharToken('=', TokenType.NOT_EQUAL, TokenType.NOT);
+                    case '>' -> type = twoCharToken('=', TokenType.GREATER_EQUAL, TokenType.GREATER);
+                    case '<' -> type = twoCharToken('=', TokenType.LESS_EQUAL, TokenType.LESS);
+                    case '&' -> type = twoCharToken('&', TokenType.AND, TokenType.UNKNOWN);
+                    case '|' -> type = twoCharToken('|', TokenType.OR, TokenType.UNKNOWN);
+                    default -> {
+                        if (isDigit(c)) {
+                            type = TokenType.NUMBER;
+                            pos = scanNumber(pos);
+                        } else if (isIdentifierStart(c)) {
+                            pos++;
+                            while (isIdentifierPart(chars.charAt(pos))) pos++;
+                            type = keywordOrIdentifier(begin, pos);
+                        } else if (isLineTerminator(c)) {
+                            // Not matched by any token class, skipped the same way the old regex scan did
+                            pos++;
+                            continue;
+                        } else {
+                            type = TokenType.UNKNOWN;
+                            pos++;
+                            if (Character.isHighSurrogate((char) c) && Character.isLowSurrogate((char) chars.charAt(pos))) pos++;
+                        }
+                    }
+                }
+
+                if (type == TokenType.UNKNOWN && diagnostics != null) {
+                    diagnostics.error("Unknown token found: " + chars.text(begin, pos), new Span(beginLine, begin, pos));
+                    continue;
+                }
+
+                tokenStart = begin;
+                tokenEnd = pos;
+                tokenLine = beginLine;
+                tokenSymbol = type == TokenType.IDENTIFIER ? chars.intern(begin, pos) : SymbolTable.NO_SYMBOL;
+                return type;
+            }
+        }
+
+        // A lone '\r' or a '\n' ends a line, so "\r\n" is counted once
+        private void countLine(int c) {
+            if (c == '\n' || (c == '\r' && chars.charAt(pos + 1) != '\n')) {
+                lineNum++;
+            }
+        }
+
+        private TokenType keywordOrIdentifier(int begin, int end) {
+            int first = chars.charAt(begin);
+            String[] candidates = keywordsByFirstChar[first];
+            if (candidates != null) {
+                for (int i = 0; i < candidates.length; i++) {
+                    if (candidates[i].length() == end - begin && matches(candidates[i], begin)) {
+                        return keywordTypesByFirstChar[first][i];
+                    }
                 }
             }
+            return TokenType.IDENTIFIER;
+        }
 
-            if (type == TokenType.IDENTIFIER && keywords.contains(matchedText)) {
-                type = TokenType.valueOf(matchedText.toUpperCase());
+        private boolean matches(String keyword, int begin) {
+            for (int i = 1; i < keyword.length(); i++) {
+                if (chars.charAt(begin + i) != keyword.charAt(i)) {
+                    return false;
+                }
             }
+            return true;
+        }
 
-            if (type == TokenType.WHITESPACE) {
-                continue;
+        private TokenType twoCharToken(char second, TokenType pair, TokenType single) {
+            if (chars.charAt(pos + 1) == second) {
+                pos += 2;
+                return pair;
             }
+            pos++;
+            return single;
+        }
 
-            tokens.add(new Token(span, type, matchedText));
+        // Returns the offset just past the closing quote, or -1 if the literal is not terminated
+        private int scanString(int start) {
+            int pos = start + 1;
+            int lines = 0;
+            while (true) {
+                int c = chars.charAt(pos);
+                if (c < 0) {
+                    return -1;
+                }
+                if (c == '"') {
+                    lineNum += lines;
+                    return pos + 1;
+                }
+                if (c == '\\') {
+                    int escaped = chars.charAt(pos + 1);
+                    if (escaped < 0 || isLineTerminator(escaped)) {
+                        return -1;
+                    }
+                    pos += 2;
+                } else {
+                    if (c == '\n' || (c == '\r' && chars.charAt(pos + 1) != '\n')) {
+                        lines++;
+                    }
+                    pos++;
+                }
+            }
+        }
+
+        private int scanNumber(int pos) {
+            while (isDigit(chars.charAt(pos))) pos++;
+            if (chars.charAt(pos) == '.' && isDigit(chars.charAt(pos + 1))) {
+                pos += 2;
+                while (isDigit(chars.charAt(pos))) pos++;
+            }
+            return pos;
+        }
+    }
 
+    /**
+     * Part {@code [start, limit)} of the source lexed speculatively; {@code limit} is one past the
+     * source length for the last chunk so that it keeps its EOF token.
+     */
+    private static final class Chunk {
+        final CharSequence source;
+        final int start;
+        final int limit;
+        final Interner names = new Interner();
+        TokenBuffer tokens;
+        int newlines;
+        int lineBase;
+        private int[] globalSymbols;
+
+        Chunk(CharSequence source, int start, int limit) {
+            this.source = source;
+            this.start = start;
+            this.limit = limit;
+        }
+
+        void lex() {
+            tokens = new TokenBuffer(source, Math.max(16, (limit - start) / 4));
+            Scan scan = new Scan(new SequenceSource(source, names), start, 1, null);
+            while (true) {
+                TokenType type = scan.scanToken();
+                if (scan.tokenStart >= limit) {
+                    break;
+                }
+                tokens.add(type, scan.tokenStart, scan.tokenEnd, scan.tokenLine, scan.tokenSymbol);
+                if (type == TokenType.EOF) {
+                    break;
+                }
+            }
+            newlines = countLines(source, start, Math.min(limit, source.length()));
+            globalSymbols = new int[names.size()];
+            Arrays.fill(globalSymbols, SymbolTable.NO_SYMBOL);
+        }
+
+        void copyToken(int index, TokenBuffer result, Diagnostics diagnostics) {
+            TokenType type = tokens.type(index);
+            int symbol = tokens.symbol(index);
+            if (symbol != SymbolTable.NO_SYMBOL) {
+                if (globalSymbols[symbol] == SymbolTable.NO_SYMBOL) {
+                    globalSymbols[symbol] = SymbolTable.intern(names.name(symbol));
+                }
+                symbol = globalSymbols[symbol];
+            }
+            int line = tokens.line(index) + lineBase - 1;
             if (type == TokenType.UNKNOWN) {
-                System.out.println("Unknown token found: " + matchedText);
-                System.exit(-1);
+                diagnostics.error("Unknown token found: " + tokens.text(index), new Span(line, tokens.start(index), tokens.end(index)));
+                return;
             }
+            result.add(type, tokens.start(index), tokens.end(index), line, symbol);
+        }
+    }
+
+    private static final class SequenceSource implements CharSource {
+        private final CharSequence source;
+        private final int length;
+        private final Interner names;
+
+        SequenceSource(CharSequence source) {
+            this(source, null);
+        }
+
+        // Identifiers go to the given table instead of the global one when it is not null
+        SequenceSource(CharSequence source, Interner names) {
+            this.source = source;
+            this.length = source.length();
+            this.names = names;
         }
 
-        return tokens;
+        @Override
+        public int charAt(int pos) {
+            return pos < length ? source.charAt(pos) : -1;
+        }
+
+        @Override
+        public void release(int pos) {
+        }
+
+        @Override
+        public String text(int begin, int end) {
+            return source.subSequence(begin, end).toString();
+        }
+
+        @Override
+        public int intern(int begin, int end) {
+            return names == null ? SymbolTable.intern(source, begin, end) : names.intern(source, begin, end);
+        }
+    }
+
+    /**
+     * Sliding window over a {@link Reader}. Characters before the start of the token being
+     * scanned are dropped on refill, so only the current token has to fit in memory.
+     */
+    private static final class CharWindow implements CharSource {
+        private final Reader reader;
+        private char[] buffer = new char[8192];
+        private int bufferStart = 0;
+        private int bufferLength = 0;
+        private int keepFrom = 0;
+        private boolean eof = false;
+
+        CharWindow(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int charAt(int pos) {
+            int index = pos - bufferStart;
+            if (index < bufferLength) {
+                return buffer[index];
+            }
+            return fill(pos) ? buffer[pos - bufferStart] : -1;
+        }
+
+        @Override
+        public void release(int pos) {
+            keepFrom = pos;
+        }
+
+        @Override
+        public String text(int begin, int end) {
+            return new String(buffer, begin - bufferStart, end - begin);
+        }
+
+        @Override
+        public int intern(int begin, int end) {
+            return SymbolTable.intern(CharBuffer.wrap(buffer), begin - bufferStart, end - bufferStart);
+        }
+
+        private boolean fill(int pos) {
+            while (!eof && pos - bufferStart >= bufferLength) {
+                int discard = keepFrom - bufferStart;
+                if (discard > 0) {
+                    System.arraycopy(buffer, discard, buffer, 0, bufferLength - discard);
+                    bufferStart += discard;
+                    bufferLength -= discard;
+                }
+                if (bufferLength == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                try {
+                    int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        bufferLength += read;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return pos - bufferStart < bufferLength;
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(int c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        return isIdentifierStart(c) || isDigit(c);
     }
 
     public static void main(String[] args) throws IOException {
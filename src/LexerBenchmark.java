@@ -0,0 +1,206 @@
+import symbols.SymbolTable;
+import tokens.Token;
+import tokens.TokenBuffer;
+import tokens.TokenType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures tokens/sec of {@link Lexer} against the previous regex-alternation lexer, and the
+ * retained memory per token of eagerly built token objects against a {@link tokens.TokenBuffer}, and
+ * the speedup of {@link Lexer#tokenizeParallel} on 4, 8 and 16 worker pools.
+ * Usage: java LexerBenchmark [sourceFile] [copies]
+ */
+public class LexerBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int[] PARALLEL_WORKERS = {4, 8, 16};
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? Files.readString(Paths.get(args[0])) : sampleSources();
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String input = source.repeat(copies);
+
+        Lexer lexer = new Lexer();
+        List<Token> expected = RegexLexer.lex(input);
+        List<Token> actual = lexer.lex(input);
+        if (!sameTokens(expected, actual)) {
+            throw new IllegalStateException("Scanner output differs from the regex lexer");
+        }
+        System.out.printf("Input: %d chars, %d tokens%n", input.length(), actual.size());
+
+        report("regex", expected.size(), measure(() -> RegexLexer.lex(input)));
+        long sequential = measure(() -> lexer.tokenize(input));
+        report("scanner", actual.size(), sequential);
+
+        System.out.printf("Parallel lexing, %d cores available%n", Runtime.getRuntime().availableProcessors());
+        TokenBuffer reference = lexer.tokenize(input);
+        for (int workers : PARALLEL_WORKERS) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            if (!sameTokens(reference, lexer.tokenizeParallel(input, pool))) {
+                throw new IllegalStateException("Parallel lexing differs from sequential lexing");
+            }
+            long nanos = measure(() -> lexer.tokenizeParallel(input, pool));
+            report("fj-" + workers, reference.size(), nanos);
+            System.out.printf("         speedup %.2fx%n", sequential / (double) nanos);
+            pool.shutdown();
+        }
+
+        System.out.printf("Token objects: %6.1f bytes/token%n", retainedBytes(() -> RegexLexer.lex(input)) / (double) expected.size());
+        System.out.printf("TokenBuffer:   %6.1f bytes/token%n", retainedBytes(() -> lexer.tokenize(input)) / (double) actual.size());
+    }
+
+    private static long retainedBytes(Supplier<Object> allocation) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        Object retained = allocation.get();
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        Objects.requireNonNull(retained);
+        return after - before;
+    }
+
+    private static String sampleSources() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            Path path = Paths.get(String.format("src/%d.i", i));
+            if (Files.exists(path)) {
+                builder.append(Files.readString(path)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static long measure(Runnable run) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(String name, int tokenCount, long nanos) {
+        double tokensPerSecond = tokenCount / (nanos / 1e9);
+        System.out.printf("%-8s %10.2f ms %14.0f tokens/sec%n", name, nanos / 1e6, tokensPerSecond);
+    }
+
+    private static boolean sameTokens(List<Token> expected, List<Token> actual) {
+        if (expected.size() != actual.size()) return false;
+        for (int i = 0; i < expected.size(); i++) {
+            Token e = expected.get(i);
+            Token a = actual.get(i);
+            if (e.type != a.type || !e.text().equals(a.text())) {
+                System.out.println("Token " + i + " differs: " + e.type + " '" + e.text() + "' vs " + a.type + " '" + a.text() + "'");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameTokens(TokenBuffer expected, TokenBuffer actual) {
+        if (expected.size() != actual.size()) return false;
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.type(i) != actual.type(i) || expected.start(i) != actual.start(i) || expected.end(i) != actual.end(i)
+                    || expected.line(i) != actual.line(i) || expected.symbol(i) != actual.symbol(i)) {
+                System.out.println("Token " + i + " differs: " + expected.token(i) + " vs " + actual.token(i));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The regex-alternation lexer the scanner replaced, kept as the reference implementation
+    private static class RegexLexer {
+        private static final Map<TokenType, String> tokenPatterns = new LinkedHashMap<>();
+        // Matched ahead of every token pattern and dropped
+        private static final String WHITESPACE = "\\s+";
+        private static final Set<String> keywords = new HashSet<>();
+
+        static {
+            keywords.addAll(Arrays.asList(
+                    "var", "type", "routine", "is", "end", "record", "array", "while", "loop", "for", "to",
+                    "if", "then", "else", "elsif", "true", "false", "print", "return", "in"
+            ));
+
+            tokenPatterns.put(TokenType.STRING, "\"(\\\\.|[^\"\\\\])*\"");
+            tokenPatterns.put(TokenType.NUMBER, "\\d+(\\.\\d+)?");
+            tokenPatterns.put(TokenType.IDENTIFIER, "[a-zA-Z_][a-zA-Z0-9_]*");
+
+            tokenPatterns.put(TokenType.PLUS, "\\+");
+            tokenPatterns.put(TokenType.RANGE_OPERATOR, "\\.\\.");
+            tokenPatterns.put(TokenType.MINUS, "-");
+            tokenPatterns.put(TokenType.STAR, "\\*");
+            tokenPatterns.put(TokenType.SLASH, "/");
+            tokenPatterns.put(TokenType.MOD, "%");
+            tokenPatterns.put(TokenType.ASSIGN, ":=");
+            tokenPatterns.put(TokenType.EQUAL, "=");
+            tokenPatterns.put(TokenType.NOT_EQUAL, "!=");
+            tokenPatterns.put(TokenType.GREATER_EQUAL, ">=");
+            tokenPatterns.put(TokenType.LESS_EQUAL, "<=");
+            tokenPatterns.put(TokenType.LESS, "<");
+            tokenPatterns.put(TokenType.GREATER, ">");
+            tokenPatterns.put(TokenType.LPAREN, "\\(");
+            tokenPatterns.put(TokenType.RPAREN, "\\)");
+            tokenPatterns.put(TokenType.LBRACKET, "\\[");
+            tokenPatterns.put(TokenType.RBRACKET, "\\]");
+            tokenPatterns.put(TokenType.DOT, "\\.");
+            tokenPatterns.put(TokenType.COMMA, ",");
+            tokenPatterns.put(TokenType.COLON, ":");
+            tokenPatterns.put(TokenType.SEMICOLON, ";");
+
+            tokenPatterns.put(TokenType.AND, "\\&\\&");
+            tokenPatterns.put(TokenType.OR, "\\|\\|");
+            tokenPatterns.put(TokenType.NOT, "\\!");
+
+            tokenPatterns.put(TokenType.EOF, "$");
+            tokenPatterns.put(TokenType.UNKNOWN, ".");
+        }
+
+        static List<Token> lex(String input) {
+            List<Token> tokens = new ArrayList<>();
+            StringBuilder tokenPatternBuilder = new StringBuilder(String.format("(%s)", WHITESPACE));
+
+            for (Map.Entry<TokenType, String> entry : tokenPatterns.entrySet()) {
+                tokenPatternBuilder.append(String.format("|(%s)", entry.getValue()));
+            }
+            Pattern tokenPattern = Pattern.compile(tokenPatternBuilder.toString());
+
+            Matcher matcher = tokenPattern.matcher(input);
+            while (matcher.find()) {
+                String matchedText = matcher.group();
+                if (matchedText.matches(WHITESPACE)) {
+                    continue;
+                }
+                TokenType type = TokenType.UNKNOWN;
+
+                for (Map.Entry<TokenType, String> entry : tokenPatterns.entrySet()) {
+                    if (matchedText.matches(entry.getValue())) {
+                        type = entry.getKey();
+                        break;
+                    }
+                }
+
+                if (type == TokenType.IDENTIFIER && keywords.contains(matchedText)) {
+                    type = TokenType.valueOf(matchedText.toUpperCase());
+                }
+
+                tokens.add(new Token(type, matchedText, matcher.start(), 1, SymbolTable.NO_SYMBOL));
+            }
+            return tokens;
+        }
+    }
+}
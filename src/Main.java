@@ -1,41 +1,74 @@
+import cache.AstCache;
+import diagnostics.Diagnostics;
 import node.ProgramNode;
 import optimization.ASTOptimizer;
+import pass.PassManager;
 import semantic.DeclarationChecker;
 import semantic.KeyWordUsageChecker;
-import tokens.Token;
+import semantic.NameResolver;
+import semantic.TypeChecker;
+import tokens.TokenBuffer;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
+    private static final Path AST_CACHE_DIRECTORY = Paths.get("ast-cache");
+    private static final long AST_CACHE_MAX_BYTES = 64L << 20;
+
     public static void main(String[] args) throws IOException {
+        AstCache astCache = new AstCache(AST_CACHE_DIRECTORY, AST_CACHE_MAX_BYTES);
 
-        Lexer lexer = new Lexer();
-        FileToString fileToString = new FileToString();
-        for (int i = 1; i <= 10; i ++) {
+        for (int i = 1; i <= 11; i ++) {
             String sourceFileName = String.format("src/%d.i", i);
-            String inputFileContent = fileToString.getStringFromTheLink(sourceFileName);
+            CharSequence source = SourceLoader.load(sourceFileName);
             sourceFileName = Paths.get(sourceFileName).getFileName().toString();
 
-            List<Token> tokens = lexer.lex(inputFileContent);
-            Parser parser = new Parser(tokens);
-            ProgramNode program = parser.parse();
+            Diagnostics diagnostics = new Diagnostics();
+            String cacheKey = AstCache.key(source);
+            ProgramNode program = astCache.get(cacheKey);
+            if (program == null) {
+                Lexer lexer = new Lexer(diagnostics);
+                TokenBuffer tokens = lexer.tokenizeParallel(source);
+                program = ParallelParser.parse(tokens, diagnostics);
+                // Only programs without syntax errors are cached, so a hit never hides a diagnostic
+                if (!diagnostics.hasErrors()) {
+                    astCache.put(cacheKey, program);
+                }
+            }
 
-            ASTOptimizer optimizer = new ASTOptimizer();
-            program = optimizer.optimize(program);
-            KeyWordUsageChecker keyWordUsageChecker = new KeyWordUsageChecker();
-            DeclarationChecker declarationChecker = new DeclarationChecker();
-            keyWordUsageChecker.check(program);
-            declarationChecker.checkDeclarations(program);
+            // Name resolution, the keyword check and the declaration check share the first walk;
+            // routine bodies are checked and emitted on the pool
+            PassManager passes = new PassManager(true, ForkJoinPool.commonPool());
+            passes.add(new KeyWordUsageChecker(diagnostics));
+            passes.add(new NameResolver());
+            passes.add(new DeclarationChecker(diagnostics));
+            new ASTOptimizer().addPasses(passes);
+            passes.add(new TypeChecker(diagnostics, ASTOptimizer.TRANSFORMS));
+            program = passes.run(program);
+            passes.printTimings(System.out);
             System.out.println(program.statements);
+            if (diagnostics.hasErrors()) {
+                printCacheStatistics(astCache);
+                System.out.println(sourceFileName + ":");
+                diagnostics.print(System.out);
+                System.exit(-1);
+            }
 
-            JasminCodeGenerator generator = new JasminCodeGenerator(sourceFileName);
+            JasminCodeGenerator generator = new JasminCodeGenerator(sourceFileName, ForkJoinPool.commonPool());
             List<String> generatedFiles = generator.generate(program);
+            printEliminatedExpressions(generator.eliminatedExpressions());
+            printTailRecursiveRoutines(generator.tailRecursiveRoutines());
 
             String osName = System.getProperty("os.name").toLowerCase(Locale.ROOT);
             boolean isWindows = osName.contains("win");
@@ -81,7 +114,47 @@ public class Main {
                     e.printStackTrace();
                 }
             }
+
+            // A sample with a recorded output is run, so a miscompiled program fails here instead of passing silently
+            Path expectedOutput = Paths.get(String.format("src/%d.expected", i));
+            if (Files.exists(expectedOutput) && !outputMatches(sourceFileName, Files.readString(expectedOutput))) {
+                System.exit(-1);
+            }
+        }
+        printCacheStatistics(astCache);
+    }
+
+    private static void printCacheStatistics(AstCache astCache) {
+        System.out.printf("AST cache: %d hits, %d misses%n", astCache.hits(), astCache.misses());
+    }
+
+    private static void printEliminatedExpressions(Map<String, Integer> eliminated) {
+        for (Map.Entry<String, Integer> method : eliminated.entrySet()) {
+            System.out.printf("%-28s %4d redundant expressions eliminated%n", method.getKey(), method.getValue());
+        }
+    }
+
+    private static void printTailRecursiveRoutines(Set<String> routines) {
+        for (String routine : routines) {
+            System.out.printf("%-28s tail calls turned into a loop%n", routine);
+        }
+    }
+
+    private static boolean outputMatches(String sourceFileName, String expected) {
+        try {
+            Process process = new ProcessBuilder("java", "-cp", "output/" + sourceFileName, "Main")
+                    .redirectErrorStream(true)
+                    .start();
+            String actual = new String(process.getInputStream().readAllBytes()).replace("\r\n", "\n");
+            if (process.waitFor() == 0 && actual.equals(expected)) {
+                return true;
+            }
+            System.out.println(sourceFileName + ": expected output" + System.lineSeparator() + expected
+                    + "but got" + System.lineSeparator() + actual);
+        } catch (Exception e) {
+            e.printStackTrace();
         }
+        return false;
     }
 
     public static int execute(String[] args) {
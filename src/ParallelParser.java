@@ -0,0 +1,75 @@
+import diagnostics.Diagnostics;
+import node.ASTNode;
+import node.ProgramNode;
+import tokens.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses the top-level statements of a program concurrently. {@link TopLevelSplitter} finds where each
+ * top-level statement ends from the token types alone, consecutive statements are grouped into batches
+ * of similar token count, and every batch gets its own {@link Parser} over its token range. Statements
+ * and diagnostics are put back together in source order.
+ */
+public class ParallelParser {
+    // Below this many tokens per batch a task costs more than the parsing it moves off the caller
+    private static final int MIN_BATCH_TOKENS = 4096;
+
+    public static ProgramNode parse(TokenBuffer tokens, ForkJoinPool pool, Diagnostics diagnostics) {
+        int batchCount = Math.min(pool.getParallelism() * 4, tokens.size() / MIN_BATCH_TOKENS);
+        if (batchCount < 2) {
+            return new Parser(tokens.stream(Lexer.DEFAULT_LOOKAHEAD), diagnostics).parse();
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        int batchTokens = tokens.size() / batchCount;
+        int from = 0;
+        int to = 0;
+        while (!TopLevelSplitter.isEof(tokens, to)) {
+            to = TopLevelSplitter.statementEnd(tokens, to);
+            if (to - from >= batchTokens || TopLevelSplitter.isEof(tokens, to)) {
+                batches.add(new Batch(tokens, from, to));
+                from = to;
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Batch batch : batches) {
+            tasks.add(ForkJoinTask.adapt(batch::parse));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        List<ASTNode> statements = new ArrayList<>();
+        for (Batch batch : batches) {
+            statements.addAll(batch.statements);
+            diagnostics.addAll(batch.diagnostics);
+        }
+        return new ProgramNode(statements);
+    }
+
+    public static ProgramNode parse(TokenBuffer tokens, Diagnostics diagnostics) {
+        return parse(tokens, ForkJoinPool.commonPool(), diagnostics);
+    }
+
+    // Top-level statements in tokens [from, to)
+    private static final class Batch {
+        private final TokenBuffer tokens;
+        private final int from;
+        private final int to;
+        private final Diagnostics diagnostics = new Diagnostics();
+        private List<ASTNode> statements;
+
+        Batch(TokenBuffer tokens, int from, int to) {
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        void parse() {
+            statements = new Parser(tokens.stream(from, to, Lexer.DEFAULT_LOOKAHEAD), diagnostics).parse().statements;
+        }
+    }
+}
@@ -1,35 +1,118 @@
+import diagnostics.Diagnostics;
 import node.*;
+import tokens.ListTokenStream;
 import tokens.Token;
+import tokens.TokenStream;
 import tokens.TokenType;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class Parser {
-    private List<Token> tokens;
-    private int current;
+    // Left binding power of each binary operator, indexed by TokenType ordinal; 0 for everything else
+    private static final int[] BINDING_POWER = new int[TokenType.values().length];
+
+    static {
+        BINDING_POWER[TokenType.OR.ordinal()] = 1;
+        BINDING_POWER[TokenType.AND.ordinal()] = 2;
+        BINDING_POWER[TokenType.EQUAL.ordinal()] = 3;
+        BINDING_POWER[TokenType.NOT_EQUAL.ordinal()] = 3;
+        BINDING_POWER[TokenType.LESS.ordinal()] = 4;
+        BINDING_POWER[TokenType.LESS_EQUAL.ordinal()] = 4;
+        BINDING_POWER[TokenType.GREATER.ordinal()] = 4;
+        BINDING_POWER[TokenType.GREATER_EQUAL.ordinal()] = 4;
+        BINDING_POWER[TokenType.PLUS.ordinal()] = 5;
+        BINDING_POWER[TokenType.MINUS.ordinal()] = 5;
+        BINDING_POWER[TokenType.STAR.ordinal()] = 6;
+        BINDING_POWER[TokenType.SLASH.ordinal()] = 6;
+        BINDING_POWER[TokenType.MOD.ordinal()] = 6;
+    }
+
+    private final TokenStream tokens;
+    private final Diagnostics diagnostics;
+    private Token previous;
+    // Number of enclosing blocks; error recovery stops at 'end', 'elsif' and 'else' only inside one
+    private int blockDepth;
+
+    public Parser(TokenStream tokens, Diagnostics diagnostics) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+    }
+
+    public Parser(TokenStream tokens) {
+        this(tokens, new Diagnostics());
+    }
 
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
-        this.current = 0;
+        this(new ListTokenStream(tokens));
+    }
+
+    public Diagnostics diagnostics() {
+        return diagnostics;
     }
 
     private Token consume(TokenType type, String errorMessage) {
-        System.out.println(type);
         Token token = peek();
         if (token.type == type) {
             advance();
             return token;
         }
-        throw new RuntimeException(errorMessage);
+        throw error(token, errorMessage);
+    }
+
+    // A number that does not fit an int is reported and read as 0, so the statement around it still parses
+    private int intValue(Token token) {
+        try {
+            return Integer.parseInt(token.text());
+        } catch (NumberFormatException e) {
+            diagnostics.error("Integer literal out of range: " + token.text(), token.span());
+            return 0;
+        }
+    }
+
+    private ParseError error(Token token, String message) {
+        diagnostics.error(message + ", found " + token.type, token.span());
+        return new ParseError();
+    }
+
+    /**
+     * Panic mode: skips tokens until just after a semicolon or up to the start of the next statement.
+     */
+    private void synchronize() {
+        while (!isAtEnd()) {
+            if (previous() != null && previous().type == TokenType.SEMICOLON) return;
+            switch (peek().type) {
+                case VAR, IF, WHILE, FOR, ROUTINE, RETURN, PRINT, TYPE -> {
+                    return;
+                }
+                case END, ELSIF, ELSE -> {
+                    if (blockDepth > 0) return;
+                }
+                default -> {
+                }
+            }
+            advance();
+        }
+    }
+
+    // Statement parser that recovers from a syntax error; returns null for a statement that was dropped
+    private ASTNode parseStatementOrRecover() {
+        Token start = peek();
+        try {
+            return parseStatement();
+        } catch (ParseError e) {
+            if (peek() == start) advance();
+            synchronize();
+            return null;
+        }
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.peek(0);
     }
 
     private Token advance() {
-        if (!isAtEnd()) current++;
+        if (!isAtEnd()) previous = tokens.next();
         return previous();
     }
 
@@ -38,15 +121,13 @@ public class Parser {
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            advance();
+            return true;
         }
         return false;
     }
@@ -58,7 +139,8 @@ public class Parser {
     public ProgramNode parse() {
         List<ASTNode> statements = new ArrayList<>();
         while (!isAtEnd()) {
-            statements.add(parseStatement());
+            ASTNode statement = parseStatementOrRecover();
+            if (statement != null) statements.add(statement);
         }
         return new ProgramNode(statements);
     }
@@ -88,7 +170,7 @@ public class Parser {
             expression = parseExpression();
         }
         consume(TokenType.SEMICOLON, "Expected semicolon");
-        return new VarDeclarationNode(identifier.text, type, expression);
+        return new VarDeclarationNode(identifier.symbol(), type, expression);
     }
 
     private ASTNode parseAssignmentOrFunctionCall() {
@@ -100,6 +182,9 @@ public class Parser {
         }
 
         if (match(TokenType.LPAREN)) {
+            if (!(lvalue instanceof IdentifierNode identifier)) {
+                throw error(peek(), "Expected assignment or function call");
+            }
             List<ASTNode> arguments = new ArrayList<>();
             if (!check(TokenType.RPAREN)) {
                 do {
@@ -108,16 +193,16 @@ public class Parser {
             }
             consume(TokenType.RPAREN, "Expected closing parenthesis");
             consume(TokenType.SEMICOLON, "Expected semicolon after function call");
-            return new FunctionCallNode(((IdentifierNode) lvalue).name, arguments);
+            return new FunctionCallNode(identifier.symbol, arguments);
         }
-        throw new RuntimeException("Expected assignment or function call");
+        throw error(peek(), "Expected assignment or function call");
     }
 
     private ASTNode parseLValue() {
-        ASTNode base = new IdentifierNode(consume(TokenType.IDENTIFIER, "Expected identifier").text);
-        while (match(TokenType.DOT, TokenType.LBRACKET)) {
-            if (previous().type == TokenType.DOT) {
-                base = new LValueNode(base, consume(TokenType.IDENTIFIER, "Expected field").text, null);
+        ASTNode base = new IdentifierNode(consume(TokenType.IDENTIFIER, "Expected identifier").symbol());
+        while (check(TokenType.DOT) || check(TokenType.LBRACKET)) {
+            if (advance().type == TokenType.DOT) {
+                base = new LValueNode(base, consume(TokenType.IDENTIFIER, "Expected field").text(), null);
             } else {
                 ASTNode index = parseExpression();
                 consume(TokenType.RBRACKET, "Expected closing bracket");
@@ -169,7 +254,7 @@ public class Parser {
         List<ASTNode> body = parseBlock();
         consume(TokenType.END, "Expected 'end'");
         consume(TokenType.SEMICOLON, "Expected semicolon");
-        return new ForLoopNode(identifier.text, startExpression, endExpression, body);
+        return new ForLoopNode(identifier.symbol(), startExpression, endExpression, body);
     }
 
 
@@ -183,7 +268,7 @@ public class Parser {
                 Token paramIdentifier = consume(TokenType.IDENTIFIER, "Expected parameter name");
                 consume(TokenType.COLON, "Expected ':' after parameter name");
                 ASTNode type = parseType();
-                params.add(new ParamNode(paramIdentifier.text, type));
+                params.add(new ParamNode(paramIdentifier.symbol(), type));
             } while (match(TokenType.COMMA));
         }
         consume(TokenType.RPAREN, "Expected ')' after parameters");
@@ -197,7 +282,7 @@ public class Parser {
         List<ASTNode> body = parseBlock();
         consume(TokenType.END, "Expected 'end' after routine body");
         consume(TokenType.SEMICOLON, "Expected semicolon after 'end'");
-        return new RoutineDeclarationNode(identifier.text, params, returnType, body);
+        return new RoutineDeclarationNode(identifier.symbol(), params, returnType, body);
     }
 
 
@@ -221,90 +306,51 @@ public class Parser {
         consume(TokenType.IS, "Expected 'is'");
 
         if (match(TokenType.RECORD)) {
-            System.out.printf(identifier.text);
             return parseRecordDeclaration(identifier);
         } else if (match(TokenType.ARRAY)) {
             return parseArrayDeclaration(identifier);
         }
-        throw new RuntimeException("Expected 'record' or 'array'");
+        throw error(peek(), "Expected 'record' or 'array'");
     }
 
 
     private List<ASTNode> parseBlock() {
         List<ASTNode> statements = new ArrayList<>();
+        blockDepth++;
         while (!check(TokenType.END) && !check(TokenType.ELSIF) && !check(TokenType.ELSE) && !isAtEnd()) {
-            statements.add(parseStatement());
+            ASTNode statement = parseStatementOrRecover();
+            if (statement != null) statements.add(statement);
         }
+        blockDepth--;
         return statements;
     }
 
     private ASTNode parseExpression() {
-        return parseLogicalOr();
+        return parseExpression(0);
     }
 
-    private ASTNode parseLogicalOr() {
-        ASTNode left = parseLogicalAnd();
-        while (match(TokenType.OR)) {
-            TokenType operator = previous().type;
-            ASTNode right = parseLogicalAnd();
-            left = new BinaryOperationNode(left, operator, right);
-        }
-        return left;
-    }
-
-    private ASTNode parseLogicalAnd() {
-        ASTNode left = parseEquality();
-        while (match(TokenType.AND)) {
-            TokenType operator = previous().type;
-            ASTNode right = parseEquality();
-            left = new BinaryOperationNode(left, operator, right);
-        }
-        return left;
-    }
-
-    private ASTNode parseEquality() {
-        ASTNode left = parseComparison();
-        while (match(TokenType.EQUAL, TokenType.NOT_EQUAL)) {
-            TokenType operator = previous().type;
-            ASTNode right = parseComparison();
-            left = new BinaryOperationNode(left, operator, right);
-        }
-        return left;
-    }
-
-    private ASTNode parseComparison() {
-        ASTNode left = parseTerm();
-        while (match(TokenType.LESS, TokenType.LESS_EQUAL, TokenType.GREATER, TokenType.GREATER_EQUAL)) {
-            TokenType operator = previous().type;
-            ASTNode right = parseTerm();
-            left = new BinaryOperationNode(left, operator, right);
-        }
-        return left;
-    }
-
-    private ASTNode parseTerm() {
-        ASTNode left = parseFactor();
-        while (match(TokenType.PLUS, TokenType.MINUS)) {
-            TokenType operator = previous().type;
-            ASTNode right = parseFactor();
-            left = new BinaryOperationNode(left, operator, right);
-        }
-        return left;
-    }
-
-    private ASTNode parseFactor() {
+    /**
+     * Precedence climbing: operators of one level are folded in the loop, so a chain of them costs no
+     * extra stack depth; only a tighter-binding operator recurses, at most once per precedence level.
+     */
+    private ASTNode parseExpression(int minBindingPower) {
         ASTNode left = parseUnary();
-        while (match(TokenType.STAR, TokenType.SLASH, TokenType.MOD)) {
-            TokenType operator = previous().type;
-            ASTNode right = parseUnary();
+        while (true) {
+            TokenType operator = peek().type;
+            int bindingPower = BINDING_POWER[operator.ordinal()];
+            if (bindingPower <= minBindingPower) {
+                return left;
+            }
+            advance();
+            ASTNode right = parseExpression(bindingPower);
             left = new BinaryOperationNode(left, operator, right);
         }
-        return left;
     }
 
     private ASTNode parseUnary() {
-        if (match(TokenType.NOT, TokenType.MINUS)) {
-            TokenType operator = previous().type;
+        TokenType operator = peek().type;
+        if (operator == TokenType.NOT || operator == TokenType.MINUS) {
+            advance();
             ASTNode operand = parsePrimary();
             return new UnaryOperationNode(operator, operand);
         }
@@ -313,13 +359,13 @@ public class Parser {
 
     private ASTNode parsePrimary() {
         if (match(TokenType.NUMBER)) {
-            if (previous().text.contains(".")) {
-                return new LiteralNode(Double.parseDouble(previous().text));
+            if (previous().text().contains(".")) {
+                return new LiteralNode(Double.parseDouble(previous().text()));
             }
-            return new LiteralNode(Integer.parseInt(previous().text));
+            return new LiteralNode(intValue(previous()));
         }
         if (match(TokenType.STRING)) {
-            return new LiteralNode(previous().text);
+            return new LiteralNode(previous().text());
         }
         if (match(TokenType.TRUE)) {
             return new LiteralNode(true);
@@ -329,7 +375,7 @@ public class Parser {
         }
 
         if (match(TokenType.IDENTIFIER)) {
-            String identifier = previous().text;
+            int identifier = previous().symbol();
 
             ASTNode base = new IdentifierNode(identifier);
 
@@ -363,13 +409,13 @@ public class Parser {
             return expression;
         }
 
-        throw new RuntimeException("Expected expression");
+        throw error(peek(), "Expected expression");
     }
 
 
     private ASTNode handlePropertyAccess(ASTNode base) {
         while (match(TokenType.DOT)) {
-            String propertyName = consume(TokenType.IDENTIFIER, "Expected property name").text;
+            String propertyName = consume(TokenType.IDENTIFIER, "Expected property name").text();
             base = new LValueNode(base, propertyName, null);
         }
         return base;
@@ -381,7 +427,7 @@ public class Parser {
         consume(TokenType.RBRACKET, "Expected ']'");
         ASTNode type = parseType();
         consume(TokenType.SEMICOLON, "Expected semicolon");
-        return new ArrayDeclarationNode(identifier.text, Integer.parseInt(sizeToken.text), type);
+        return new ArrayDeclarationNode(identifier.symbol(), intValue(sizeToken), type);
     }
 
     private ASTNode parseRecordDeclaration(Token identifier) {
@@ -392,7 +438,7 @@ public class Parser {
         }
         consume(TokenType.END, "Expected 'end'");
         consume(TokenType.SEMICOLON, "Expected semicolon");
-        return new RecordDeclarationNode(identifier.text, fields);
+        return new RecordDeclarationNode(identifier.symbol(), fields);
     }
 
 
@@ -402,10 +448,19 @@ public class Parser {
             Token sizeToken = consume(TokenType.NUMBER, "Expected array size");
             consume(TokenType.RBRACKET, "Expected ']'");
             Token typeName = consume(TokenType.IDENTIFIER, "Expected type name");
-            return new ArrayTypeNode(typeName.text, Integer.parseInt(sizeToken.text));
+            return new ArrayTypeNode(typeName.text(), intValue(sizeToken));
         }
 
         Token typeName = consume(TokenType.IDENTIFIER, "Expected type name");
-        return new TypeNode(typeName.text);
+        return new TypeNode(typeName.symbol());
+    }
+
+    // Unwinds to the enclosing statement once the error is recorded
+    private static class ParseError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ParseError() {
+            super(null, null, false, false);
+        }
     }
 }
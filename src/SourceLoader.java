@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads a source file by memory-mapping it. Pure ASCII files (the common case) are exposed to
+ * the lexer directly over the mapped bytes without copying them onto the heap; anything else is
+ * decoded as UTF-8 once.
+ */
+public class SourceLoader {
+    public static CharSequence load(String filePath) throws IOException {
+        return load(Paths.get(filePath));
+    }
+
+    public static CharSequence load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file is too large to map: " + path);
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isAscii(bytes)) {
+                return new AsciiSequence(bytes, 0, (int) size);
+            }
+            return StandardCharsets.UTF_8.decode(bytes);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = 0, size = bytes.limit(); i < size; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+            }
+            return new AsciiSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            bytes.get(offset, copy);
+            return new String(copy, StandardCharsets.US_ASCII);
+        }
+    }
+}
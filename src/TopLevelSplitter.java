@@ -0,0 +1,38 @@
+import tokens.TokenBuffer;
+import tokens.TokenType;
+
+/**
+ * Finds top-level statement boundaries in a token buffer without parsing. Every construct that is
+ * closed by {@code end} ({@code if}, {@code while}, {@code for}, {@code routine} and {@code record})
+ * opens one nesting level; a semicolon at nesting level zero ends the statement.
+ */
+public class TopLevelSplitter {
+    /**
+     * Returns the index just past the statement starting at {@code from}, or the index of the EOF
+     * token if the statement is not terminated.
+     */
+    public static int statementEnd(TokenBuffer tokens, int from) {
+        int depth = 0;
+        for (int i = from; i < tokens.size(); i++) {
+            switch (tokens.type(i)) {
+                case IF, WHILE, FOR, ROUTINE, RECORD -> depth++;
+                case END -> depth = Math.max(0, depth - 1);
+                case SEMICOLON -> {
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+                case EOF -> {
+                    return i;
+                }
+                default -> {
+                }
+            }
+        }
+        return tokens.size();
+    }
+
+    public static boolean isEof(TokenBuffer tokens, int index) {
+        return index >= tokens.size() || tokens.type(index) == TokenType.EOF;
+    }
+}
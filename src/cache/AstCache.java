@@ -0,0 +1,134 @@
+package cache;
+
+import node.ProgramNode;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Directory of parsed programs keyed by a SHA-256 of the compiler version, the encoding layout and the
+ * source text, so an unchanged file skips lexing and parsing. A hit refreshes the entry's modification
+ * time, and after every store the least recently used entries are deleted until the directory fits its
+ * size limit. Entries that cannot be read are treated as misses and removed.
+ */
+public class AstCache {
+    // Bump whenever the parser or the node classes change what a source file parses to. Changes to the
+    // token types or the encoding are covered by AstCodec.LAYOUT, which is part of the key as well
+    public static final String COMPILER_VERSION = "1";
+    private static final String SUFFIX = ".ast";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AstCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+    }
+
+    public static String key(CharSequence source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((COMPILER_VERSION + "/" + AstCodec.LAYOUT + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(source)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached program for {@code key}, or null on a miss.
+     */
+    public ProgramNode get(String key) {
+        Path path = directory.resolve(key + SUFFIX);
+        if (!Files.exists(path)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            ProgramNode program = AstCodec.read(in);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return program;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@code program} under {@code key}. A store that fails, because the disk is full or the
+     * program cannot be encoded, only costs the next compilation a re-parse, so it is logged and dropped.
+     */
+    public void put(String key, ProgramNode program) {
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                AstCodec.write(program, out);
+            }
+            Files.move(temporary, directory.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("AST cache: could not store " + key + ": " + e.getMessage());
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(entries::add);
+        }
+        long total = 0;
+        List<Entry> sized = new ArrayList<>();
+        for (Path path : entries) {
+            try {
+                long size = Files.size(path);
+                sized.add(new Entry(path, size, Files.getLastModifiedTime(path).toMillis()));
+                total += size;
+            } catch (NoSuchFileException ignored) {
+                // Removed concurrently by another compiler process
+            }
+        }
+        sized.sort(Comparator.comparingLong(Entry::lastUsed));
+        for (int i = 0; total > maxBytes && i < sized.size(); i++) {
+            Files.deleteIfExists(sized.get(i).path());
+            total -= sized.get(i).size();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    private record Entry(Path path, long size, long lastUsed) {
+    }
+}
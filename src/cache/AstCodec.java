@@ -0,0 +1,404 @@
+package cache;
+
+import node.*;
+import tokens.TokenType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a {@link ProgramNode}: a header (magic, format version) followed by the tree in
+ * pre-order, one tag byte per node. Counts and indices are variable-length ints, and every name is
+ * written once and referred to by index afterwards. Names are stored as text, not symbol ids, because
+ * ids are only valid within one process. Texts are length-prefixed UTF-8, so a string literal may be
+ * longer than the 64 KB {@link DataOutputStream#writeUTF} allows.
+ */
+public final class AstCodec {
+    // Bump whenever a node tag or the encoding of a node changes
+    public static final int FORMAT_VERSION = 2;
+    private static final int MAGIC = 0x49415354; // "IAST"
+    private static final TokenType[] OPERATORS = TokenType.values();
+    /**
+     * Everything an encoding depends on: the format version, which covers the node tags, and the token
+     * types, whose ordinals encode operators, so adding, removing or reordering one changes it.
+     */
+    public static final String LAYOUT = FORMAT_VERSION + ":" + Arrays.toString(OPERATORS);
+
+    private static final byte NULL = 0;
+    private static final byte PROGRAM = 1;
+    private static final byte VAR_DECLARATION = 2;
+    private static final byte ASSIGNMENT = 3;
+    private static final byte IF = 4;
+    private static final byte WHILE = 5;
+    private static final byte FOR = 6;
+    private static final byte ROUTINE_DECLARATION = 7;
+    private static final byte PARAM = 8;
+    private static final byte RETURN = 9;
+    private static final byte PRINT = 10;
+    private static final byte RECORD_DECLARATION = 11;
+    private static final byte ARRAY_DECLARATION = 12;
+    private static final byte ARRAY_TYPE = 13;
+    private static final byte TYPE = 14;
+    private static final byte BINARY = 15;
+    private static final byte UNARY = 16;
+    private static final byte IDENTIFIER = 17;
+    private static final byte LVALUE = 18;
+    private static final byte FUNCTION_CALL = 19;
+    private static final byte INT_LITERAL = 20;
+    private static final byte DOUBLE_LITERAL = 21;
+    private static final byte BOOLEAN_LITERAL = 22;
+    private static final byte STRING_LITERAL = 23;
+
+    private AstCodec() {
+    }
+
+    public static void write(ProgramNode program, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        new Writer(out).node(program);
+    }
+
+    public static ProgramNode read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not an AST of format version " + FORMAT_VERSION);
+        }
+        ASTNode root = new Reader(in).node();
+        if (!(root instanceof ProgramNode program)) {
+            throw new IOException("AST does not start with a program node");
+        }
+        return program;
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> names = new HashMap<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void node(ASTNode node) throws IOException {
+            switch (node) {
+                case null -> out.writeByte(NULL);
+                case ProgramNode program -> {
+                    out.writeByte(PROGRAM);
+                    list(program.statements);
+                }
+                case VarDeclarationNode var -> {
+                    out.writeByte(VAR_DECLARATION);
+                    name(var.identifier);
+                    node(var.type);
+                    node(var.expression);
+                }
+                case AssignmentNode assignment -> {
+                    out.writeByte(ASSIGNMENT);
+                    node(assignment.lvalue);
+                    node(assignment.expression);
+                }
+                case IfStatementNode ifNode -> {
+                    out.writeByte(IF);
+                    node(ifNode.condition);
+                    list(ifNode.thenStatements);
+                    list(ifNode.elsifStatements);
+                    list(ifNode.elseStatements);
+                }
+                case WhileLoopNode whileNode -> {
+                    out.writeByte(WHILE);
+                    node(whileNode.condition);
+                    list(whileNode.body);
+                }
+                case ForLoopNode forNode -> {
+                    out.writeByte(FOR);
+                    name(forNode.identifier);
+                    node(forNode.startExpression);
+                    node(forNode.endExpression);
+                    list(forNode.body);
+                }
+                case RoutineDeclarationNode routine -> {
+                    out.writeByte(ROUTINE_DECLARATION);
+                    name(routine.identifier);
+                    list(routine.params);
+                    node(routine.returnType);
+                    list(routine.body);
+                }
+                case ParamNode param -> {
+                    out.writeByte(PARAM);
+                    name(param.identifier);
+                    node(param.type);
+                }
+                case ReturnStatementNode returnNode -> {
+                    out.writeByte(RETURN);
+                    node(returnNode.expression);
+                }
+                case PrintStatementNode print -> {
+                    out.writeByte(PRINT);
+                    node(print.expression);
+                }
+                case RecordDeclarationNode record -> {
+                    out.writeByte(RECORD_DECLARATION);
+                    name(record.identifier);
+                    list(record.fields);
+                }
+                case ArrayDeclarationNode array -> {
+                    out.writeByte(ARRAY_DECLARATION);
+                    name(array.identifier);
+                    varInt(array.size);
+                    node(array.type);
+                }
+                case ArrayTypeNode arrayType -> {
+                    out.writeByte(ARRAY_TYPE);
+                    name(arrayType.name);
+                    varInt(arrayType.size);
+                }
+                case TypeNode type -> {
+                    out.writeByte(TYPE);
+                    name(type.typeName);
+                }
+                case BinaryOperationNode binary -> {
+                    out.writeByte(BINARY);
+                    varInt(binary.operator.ordinal());
+                    node(binary.left);
+                    node(binary.right);
+                }
+                case UnaryOperationNode unary -> {
+                    out.writeByte(UNARY);
+                    varInt(unary.operator.ordinal());
+                    node(unary.operand);
+                }
+                case IdentifierNode identifier -> {
+                    out.writeByte(IDENTIFIER);
+                    name(identifier.name);
+                }
+                case LValueNode lvalue -> {
+                    out.writeByte(LVALUE);
+                    node(lvalue.base);
+                    name(lvalue.field);
+                    node(lvalue.index);
+                }
+                case FunctionCallNode call -> {
+                    out.writeByte(FUNCTION_CALL);
+                    name(call.identifier);
+                    list(call.arguments);
+                }
+                case LiteralNode literal -> {
+                    switch (literal.value) {
+                        case Integer value -> {
+                            out.writeByte(INT_LITERAL);
+                            out.writeInt(value);
+                        }
+                        case Double value -> {
+                            out.writeByte(DOUBLE_LITERAL);
+                            out.writeDouble(value);
+                        }
+                        case Boolean value -> {
+                            out.writeByte(BOOLEAN_LITERAL);
+                            out.writeBoolean(value);
+                        }
+                        case String value -> {
+                            out.writeByte(STRING_LITERAL);
+                            text(value);
+                        }
+                        default -> throw new IOException("Unsupported literal: " + literal.value);
+                    }
+                }
+                default -> throw new IOException("Unsupported node: " + node.getClass().getSimpleName());
+            }
+        }
+
+        // Size + 1, so that 0 can stand for a null list
+        private void list(List<? extends ASTNode> nodes) throws IOException {
+            if (nodes == null) {
+                varInt(0);
+                return;
+            }
+            varInt(nodes.size() + 1);
+            for (ASTNode node : nodes) {
+                node(node);
+            }
+        }
+
+        // 0 for null, 1 followed by the text for a new name, index + 2 for a name already written
+        private void name(String name) throws IOException {
+            if (name == null) {
+                varInt(0);
+                return;
+            }
+            Integer index = names.get(name);
+            if (index != null) {
+                varInt(index + 2);
+                return;
+            }
+            names.put(name, names.size());
+            varInt(1);
+            text(name);
+        }
+
+        private void text(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            varInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void varInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> names = new ArrayList<>();
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        ASTNode node() throws IOException {
+            byte tag = in.readByte();
+            return switch (tag) {
+                case NULL -> null;
+                case PROGRAM -> new ProgramNode(list());
+                case VAR_DECLARATION -> {
+                    String identifier = name();
+                    ASTNode type = node();
+                    yield new VarDeclarationNode(identifier, type, node());
+                }
+                case ASSIGNMENT -> {
+                    ASTNode lvalue = node();
+                    yield new AssignmentNode(lvalue, node());
+                }
+                case IF -> {
+                    ASTNode condition = node();
+                    List<ASTNode> thenStatements = list();
+                    List<ASTNode> elsifStatements = list();
+                    yield new IfStatementNode(condition, thenStatements, elsifStatements, list());
+                }
+                case WHILE -> {
+                    ASTNode condition = node();
+                    yield new WhileLoopNode(condition, list());
+                }
+                case FOR -> {
+                    String identifier = name();
+                    ASTNode start = node();
+                    ASTNode end = node();
+                    yield new ForLoopNode(identifier, start, end, list());
+                }
+                case ROUTINE_DECLARATION -> {
+                    String identifier = name();
+                    List<ParamNode> params = list();
+                    ASTNode returnType = node();
+                    yield new RoutineDeclarationNode(identifier, params, returnType, list());
+                }
+                case PARAM -> {
+                    String identifier = name();
+                    yield new ParamNode(identifier, node());
+                }
+                case RETURN -> new ReturnStatementNode(node());
+                case PRINT -> new PrintStatementNode(node());
+                case RECORD_DECLARATION -> {
+                    String identifier = name();
+                    yield new RecordDeclarationNode(identifier, list());
+                }
+                case ARRAY_DECLARATION -> {
+                    String identifier = name();
+                    int size = varInt();
+                    yield new ArrayDeclarationNode(identifier, size, node());
+                }
+                case ARRAY_TYPE -> {
+                    String name = name();
+                    yield new ArrayTypeNode(name, varInt());
+                }
+                case TYPE -> new TypeNode(name());
+                case BINARY -> {
+                    TokenType operator = operator();
+                    ASTNode left = node();
+                    yield new BinaryOperationNode(left, operator, node());
+                }
+                case UNARY -> {
+                    TokenType operator = operator();
+                    yield new UnaryOperationNode(operator, node());
+                }
+                case IDENTIFIER -> new IdentifierNode(name());
+                case LVALUE -> {
+                    ASTNode base = node();
+                    String field = name();
+                    yield new LValueNode(base, field, node());
+                }
+                case FUNCTION_CALL -> {
+                    String identifier = name();
+                    yield new FunctionCallNode(identifier, list());
+                }
+                case INT_LITERAL -> new LiteralNode(in.readInt());
+                case DOUBLE_LITERAL -> new LiteralNode(in.readDouble());
+                case BOOLEAN_LITERAL -> new LiteralNode(in.readBoolean());
+                case STRING_LITERAL -> new LiteralNode(text());
+                default -> throw new IOException("Unknown node tag " + tag);
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends ASTNode> List<T> list() throws IOException {
+            int size = varInt() - 1;
+            if (size < 0) {
+                return null;
+            }
+            List<T> nodes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                nodes.add((T) node());
+            }
+            return nodes;
+        }
+
+        private String name() throws IOException {
+            int code = varInt();
+            if (code == 0) {
+                return null;
+            }
+            if (code == 1) {
+                String name = text();
+                names.add(name);
+                return name;
+            }
+            if (code - 2 >= names.size()) {
+                throw new IOException("Name index " + (code - 2) + " out of range");
+            }
+            return names.get(code - 2);
+        }
+
+        private TokenType operator() throws IOException {
+            int ordinal = varInt();
+            if (ordinal >= OPERATORS.length) {
+                throw new IOException("Unknown operator " + ordinal);
+            }
+            return OPERATORS[ordinal];
+        }
+
+        private String text() throws IOException {
+            byte[] bytes = new byte[varInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int varInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length int");
+        }
+    }
+}
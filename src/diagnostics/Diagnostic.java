@@ -0,0 +1,19 @@
+package diagnostics;
+
+import tokens.Span;
+
+public class Diagnostic {
+    public final String message;
+    // Null for errors that are not tied to one token, such as most semantic errors
+    public final Span span;
+
+    public Diagnostic(String message, Span span) {
+        this.message = message;
+        this.span = span;
+    }
+
+    @Override
+    public String toString() {
+        return span == null ? "error: " + message : String.format("error: %s (%s)", message, span);
+    }
+}
@@ -0,0 +1,69 @@
+package diagnostics;
+
+import tokens.Span;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Errors collected over one compilation, so the lexer, parser and checkers can keep going after the
+ * first one and everything is reported together.
+ */
+public class Diagnostics {
+    // Diagnostic or forked Diagnostics, in report order
+    private final List<Object> entries = new ArrayList<>();
+
+    public synchronized void error(String message, Span span) {
+        entries.add(new Diagnostic(message, span));
+    }
+
+    public void error(String message) {
+        error(message, null);
+    }
+
+    public synchronized void addAll(Diagnostics other) {
+        entries.addAll(other.all());
+    }
+
+    /**
+     * A child whose errors are reported at this point, ahead of anything added here afterwards, however
+     * late they arrive. Lets work that runs concurrently keep the order a sequential run would give.
+     */
+    public synchronized Diagnostics fork() {
+        Diagnostics child = new Diagnostics();
+        entries.add(child);
+        return child;
+    }
+
+    public synchronized boolean hasErrors() {
+        for (Object entry : entries) {
+            if (entry instanceof Diagnostic || ((Diagnostics) entry).hasErrors()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<Diagnostic> all() {
+        List<Diagnostic> errors = new ArrayList<>();
+        collect(errors);
+        return errors;
+    }
+
+    private synchronized void collect(List<Diagnostic> errors) {
+        for (Object entry : entries) {
+            if (entry instanceof Diagnostic diagnostic) {
+                errors.add(diagnostic);
+            } else {
+                ((Diagnostics) entry).collect(errors);
+            }
+        }
+    }
+
+    public void print(PrintStream out) {
+        for (Diagnostic diagnostic : all()) {
+            out.println(diagnostic);
+        }
+    }
+}
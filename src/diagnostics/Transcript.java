@@ -0,0 +1,38 @@
+package diagnostics;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress output written while walking the tree. Like {@link Diagnostics} it can be forked, so lines
+ * written concurrently still come out in the order a sequential walk would write them.
+ */
+public class Transcript {
+    // String or forked Transcript, in output order
+    private final List<Object> entries = new ArrayList<>();
+
+    public synchronized void println(String line) {
+        entries.add(line);
+    }
+
+    public synchronized Transcript fork() {
+        Transcript child = new Transcript();
+        entries.add(child);
+        return child;
+    }
+
+    /**
+     * Prints everything written so far and empties the transcript.
+     */
+    public synchronized void print(PrintStream out) {
+        for (Object entry : entries) {
+            if (entry instanceof String line) {
+                out.println(line);
+            } else {
+                ((Transcript) entry).print(out);
+            }
+        }
+        entries.clear();
+    }
+}
@@ -0,0 +1,223 @@
+package flat;
+
+import tokens.TokenType;
+
+import java.util.Arrays;
+
+/**
+ * AST stored as parallel primitive arrays instead of node objects. A node is an int index with a kind,
+ * one int payload and a run of child slots in a shared slot array; lists are length-prefixed runs in
+ * the same array. Nodes are appended children first, so a linear scan over the indices visits the
+ * tree in post-order without following any references. Literal payloads are unboxed: ints are stored
+ * in place, doubles and strings in constant pools.
+ */
+public final class FlatAst {
+    public static final int NO_NODE = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final TokenType[] OPERATORS = TokenType.values();
+
+    private byte[] kinds = new byte[64];
+    private int[] payloads = new int[64];
+    private int[] firstSlots = new int[64];
+    private int size;
+
+    private int[] slots = new int[128];
+    private int slotCount;
+
+    private double[] doubles = new double[8];
+    private int doubleCount;
+    private String[] strings = new String[8];
+    private int stringCount;
+
+    private int root = NO_NODE;
+
+    public int add(NodeKind kind, int payload) {
+        return add(kind, payload, NO_NODE, NO_NODE, NO_NODE, NO_NODE);
+    }
+
+    public int add(NodeKind kind, int payload, int slot0) {
+        return add(kind, payload, slot0, NO_NODE, NO_NODE, NO_NODE);
+    }
+
+    public int add(NodeKind kind, int payload, int slot0, int slot1) {
+        return add(kind, payload, slot0, slot1, NO_NODE, NO_NODE);
+    }
+
+    public int add(NodeKind kind, int payload, int slot0, int slot1, int slot2) {
+        return add(kind, payload, slot0, slot1, slot2, NO_NODE);
+    }
+
+    public int add(NodeKind kind, int payload, int slot0, int slot1, int slot2, int slot3) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            firstSlots = Arrays.copyOf(firstSlots, capacity);
+        }
+        ensureSlots(kind.slots);
+        kinds[size] = (byte) kind.ordinal();
+        payloads[size] = payload;
+        firstSlots[size] = slotCount;
+        if (kind.slots > 0) {
+            slots[slotCount] = slot0;
+        }
+        if (kind.slots > 1) {
+            slots[slotCount + 1] = slot1;
+        }
+        if (kind.slots > 2) {
+            slots[slotCount + 2] = slot2;
+        }
+        if (kind.slots > 3) {
+            slots[slotCount + 3] = slot3;
+        }
+        slotCount += kind.slots;
+        root = size;
+        return size++;
+    }
+
+    /**
+     * Stores {@code items[from, to)} as a list and returns its handle.
+     */
+    public int addList(int[] items, int from, int to) {
+        int count = to - from;
+        ensureSlots(count + 1);
+        int handle = slotCount;
+        slots[slotCount++] = count;
+        System.arraycopy(items, from, slots, slotCount, count);
+        slotCount += count;
+        return handle;
+    }
+
+    public int addDouble(double value) {
+        if (doubleCount == doubles.length) doubles = Arrays.copyOf(doubles, doubleCount * 2);
+        doubles[doubleCount] = value;
+        return doubleCount++;
+    }
+
+    public int addString(String value) {
+        if (stringCount == strings.length) strings = Arrays.copyOf(strings, stringCount * 2);
+        strings[stringCount] = value;
+        return stringCount++;
+    }
+
+    private void ensureSlots(int extra) {
+        if (slotCount + extra > slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, slotCount + extra));
+        }
+    }
+
+    /**
+     * Releases unused capacity once the tree is complete.
+     */
+    public void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        payloads = Arrays.copyOf(payloads, size);
+        firstSlots = Arrays.copyOf(firstSlots, size);
+        slots = Arrays.copyOf(slots, slotCount);
+        doubles = Arrays.copyOf(doubles, doubleCount);
+        strings = Arrays.copyOf(strings, stringCount);
+    }
+
+    /**
+     * The last node added, which is the program node once the tree is built.
+     */
+    public int root() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public int payload(int node) {
+        return payloads[node];
+    }
+
+    public TokenType operator(int node) {
+        return OPERATORS[payloads[node]];
+    }
+
+    public int child(int node, int slot) {
+        return slots[firstSlots[node] + slot];
+    }
+
+    public int listSize(int list) {
+        return slots[list];
+    }
+
+    public int listItem(int list, int index) {
+        return slots[list + 1 + index];
+    }
+
+    public double doubleValue(int node) {
+        return doubles[payloads[node]];
+    }
+
+    public String stringValue(int node) {
+        return strings[payloads[node]];
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks the tree by moving one position up and down, with no allocation per step.
+     */
+    public final class Cursor {
+        private int node = root;
+        private int[] path = new int[16];
+        private int depth;
+
+        public int node() {
+            return node;
+        }
+
+        public NodeKind kind() {
+            return FlatAst.this.kind(node);
+        }
+
+        public int payload() {
+            return payloads[node];
+        }
+
+        /**
+         * Moves to the child in {@code slot}; stays put and returns false if there is none.
+         */
+        public boolean down(int slot) {
+            return moveTo(child(node, slot));
+        }
+
+        /**
+         * Moves to item {@code index} of the list in {@code slot}.
+         */
+        public boolean down(int slot, int index) {
+            int list = child(node, slot);
+            return list != NO_NODE && index < FlatAst.this.listSize(list) && moveTo(listItem(list, index));
+        }
+
+        public int listSize(int slot) {
+            int list = child(node, slot);
+            return list == NO_NODE ? 0 : FlatAst.this.listSize(list);
+        }
+
+        public void up() {
+            node = path[--depth];
+        }
+
+        private boolean moveTo(int target) {
+            if (target == NO_NODE) {
+                return false;
+            }
+            if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+            path[depth++] = node;
+            node = target;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package flat;
+
+import node.*;
+import symbols.SymbolTable;
+import tokens.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts between the object tree in {@code node} and a {@link FlatAst}, so passes can be moved to
+ * the flat form one at a time. Field and element type names are stored as symbol ids.
+ */
+public final class FlatAstAdapter {
+    private static final TokenType[] OPERATORS = TokenType.values();
+
+    private FlatAstAdapter() {
+    }
+
+    public static FlatAst toFlat(ProgramNode program) {
+        FlatAst ast = new FlatAst();
+        new Flattener(ast).program(program);
+        ast.trimToSize();
+        return ast;
+    }
+
+    public static ProgramNode toTree(FlatAst ast) {
+        return (ProgramNode) toNode(ast, ast.root());
+    }
+
+    private static final class Flattener {
+        private final FlatAst ast;
+        private int[] scratch = new int[64];
+        private int scratchSize;
+
+        Flattener(FlatAst ast) {
+            this.ast = ast;
+        }
+
+        int program(ProgramNode program) {
+            return ast.add(NodeKind.PROGRAM, 0, list(program.statements));
+        }
+
+        // Children are added before the list that refers to them; nested lists share the scratch stack
+        private int list(List<? extends ASTNode> nodes) {
+            if (nodes == null) {
+                return FlatAst.NO_NODE;
+            }
+            int base = scratchSize;
+            for (ASTNode node : nodes) {
+                int index = node(node);
+                if (scratchSize == scratch.length) scratch = Arrays.copyOf(scratch, scratchSize * 2);
+                scratch[scratchSize++] = index;
+            }
+            int handle = ast.addList(scratch, base, scratchSize);
+            scratchSize = base;
+            return handle;
+        }
+
+        private int node(ASTNode node) {
+            return switch (node) {
+                case null -> FlatAst.NO_NODE;
+                case ProgramNode program -> program(program);
+                case VarDeclarationNode var -> {
+                    int type = node(var.type);
+                    int expression = node(var.expression);
+                    yield ast.add(NodeKind.VAR_DECLARATION, var.symbol, type, expression);
+                }
+                case AssignmentNode assignment -> {
+                    int lvalue = node(assignment.lvalue);
+                    int expression = node(assignment.expression);
+                    yield ast.add(NodeKind.ASSIGNMENT, 0, lvalue, expression);
+                }
+                case IfStatementNode ifNode -> {
+                    int condition = node(ifNode.condition);
+                    int thenList = list(ifNode.thenStatements);
+                    int elsifList = list(ifNode.elsifStatements);
+                    int elseList = list(ifNode.elseStatements);
+                    yield ast.add(NodeKind.IF, 0, condition, thenList, elsifList, elseList);
+                }
+                case WhileLoopNode whileNode -> {
+                    int condition = node(whileNode.condition);
+                    yield ast.add(NodeKind.WHILE, 0, condition, list(whileNode.body));
+                }
+                case ForLoopNode forNode -> {
+                    int start = node(forNode.startExpression);
+                    int end = node(forNode.endExpression);
+                    yield ast.add(NodeKind.FOR, forNode.symbol, start, end, list(forNode.body));
+                }
+                case RoutineDeclarationNode routine -> {
+                    int returnType = node(routine.returnType);
+                    int params = list(routine.params);
+                    yield ast.add(NodeKind.ROUTINE_DECLARATION, routine.symbol, returnType, params, list(routine.body));
+                }
+                case ParamNode param -> ast.add(NodeKind.PARAM, param.symbol, node(param.type));
+                case ReturnStatementNode returnNode -> ast.add(NodeKind.RETURN, 0, node(returnNode.expression));
+                case PrintStatementNode print -> ast.add(NodeKind.PRINT, 0, node(print.expression));
+                case RecordDeclarationNode record -> ast.add(NodeKind.RECORD_DECLARATION, record.symbol, list(record.fields));
+                case ArrayDeclarationNode array -> {
+                    int size = ast.add(NodeKind.INT_LITERAL, array.size);
+                    yield ast.add(NodeKind.ARRAY_DECLARATION, array.symbol, size, node(array.type));
+                }
+                case ArrayTypeNode arrayType -> ast.add(NodeKind.ARRAY_TYPE, SymbolTable.intern(arrayType.name),
+                        ast.add(NodeKind.INT_LITERAL, arrayType.size));
+                case TypeNode type -> ast.add(NodeKind.TYPE, type.symbol);
+                case BinaryOperationNode binary -> {
+                    int left = node(binary.left);
+                    int right = node(binary.right);
+                    yield ast.add(NodeKind.BINARY, binary.operator.ordinal(), left, right);
+                }
+                case UnaryOperationNode unary -> ast.add(NodeKind.UNARY, unary.operator.ordinal(), node(unary.operand));
+                case IdentifierNode identifier -> ast.add(NodeKind.IDENTIFIER, identifier.symbol);
+                case LValueNode lvalue -> {
+                    int base = node(lvalue.base);
+                    int index = node(lvalue.index);
+                    int field = lvalue.field == null ? SymbolTable.NO_SYMBOL : SymbolTable.intern(lvalue.field);
+                    yield ast.add(NodeKind.LVALUE, field, base, index);
+                }
+                case FunctionCallNode call -> ast.add(NodeKind.FUNCTION_CALL, call.symbol, list(call.arguments));
+                case LiteralNode literal -> switch (literal.value) {
+                    case Integer value -> ast.add(NodeKind.INT_LITERAL, value);
+                    case Double value -> ast.add(NodeKind.DOUBLE_LITERAL, ast.addDouble(value));
+                    case Boolean value -> ast.add(NodeKind.BOOLEAN_LITERAL, value ? 1 : 0);
+                    case String value -> ast.add(NodeKind.STRING_LITERAL, ast.addString(value));
+                    default -> throw new IllegalArgumentException("Unsupported literal: " + literal.value);
+                };
+                default -> throw new IllegalArgumentException("Unsupported node: " + node.getClass().getSimpleName());
+            };
+        }
+    }
+
+    private static ASTNode toNode(FlatAst ast, int node) {
+        if (node == FlatAst.NO_NODE) {
+            return null;
+        }
+        int payload = ast.payload(node);
+        return switch (ast.kind(node)) {
+            case PROGRAM -> new ProgramNode(toList(ast, ast.child(node, 0)));
+            case VAR_DECLARATION -> new VarDeclarationNode(payload, toNode(ast, ast.child(node, 0)), toNode(ast, ast.child(node, 1)));
+            case ASSIGNMENT -> new AssignmentNode(toNode(ast, ast.child(node, 0)), toNode(ast, ast.child(node, 1)));
+            case IF -> new IfStatementNode(toNode(ast, ast.child(node, 0)), toList(ast, ast.child(node, 1)),
+                    toList(ast, ast.child(node, 2)), toList(ast, ast.child(node, 3)));
+            case WHILE -> new WhileLoopNode(toNode(ast, ast.child(node, 0)), toList(ast, ast.child(node, 1)));
+            case FOR -> new ForLoopNode(payload, toNode(ast, ast.child(node, 0)), toNode(ast, ast.child(node, 1)),
+                    toList(ast, ast.child(node, 2)));
+            case ROUTINE_DECLARATION -> new RoutineDeclarationNode(payload, toList(ast, ast.child(node, 1)),
+                    toNode(ast, ast.child(node, 0)), toList(ast, ast.child(node, 2)));
+            case PARAM -> new ParamNode(payload, toNode(ast, ast.child(node, 0)));
+            case RETURN -> new ReturnStatementNode(toNode(ast, ast.child(node, 0)));
+            case PRINT -> new PrintStatementNode(toNode(ast, ast.child(node, 0)));
+            case RECORD_DECLARATION -> new RecordDeclarationNode(payload, toList(ast, ast.child(node, 0)));
+            case ARRAY_DECLARATION -> new ArrayDeclarationNode(payload, ast.payload(ast.child(node, 0)),
+                    toNode(ast, ast.child(node, 1)));
+            case ARRAY_TYPE -> new ArrayTypeNode(SymbolTable.name(payload), ast.payload(ast.child(node, 0)));
+            case TYPE -> new TypeNode(payload);
+            case BINARY -> new BinaryOperationNode(toNode(ast, ast.child(node, 0)), OPERATORS[payload], toNode(ast, ast.child(node, 1)));
+            case UNARY -> new UnaryOperationNode(OPERATORS[payload], toNode(ast, ast.child(node, 0)));
+            case IDENTIFIER -> new IdentifierNode(payload);
+            case LVALUE -> new LValueNode(toNode(ast, ast.child(node, 0)),
+                    payload == SymbolTable.NO_SYMBOL ? null : SymbolTable.name(payload), toNode(ast, ast.child(node, 1)));
+            case FUNCTION_CALL -> new FunctionCallNode(payload, toList(ast, ast.child(node, 0)));
+            case INT_LITERAL -> new LiteralNode(payload);
+            case DOUBLE_LITERAL -> new LiteralNode(ast.doubleValue(node));
+            case BOOLEAN_LITERAL -> new LiteralNode(payload != 0);
+            case STRING_LITERAL -> new LiteralNode(ast.stringValue(node));
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ASTNode> List<T> toList(FlatAst ast, int list) {
+        if (list == FlatAst.NO_NODE) {
+            return null;
+        }
+        List<T> nodes = new ArrayList<>(ast.listSize(list));
+        for (int i = 0; i < ast.listSize(list); i++) {
+            nodes.add((T) toNode(ast, ast.listItem(list, i)));
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,61 @@
+package flat;
+
+/**
+ * Node kinds of a {@link FlatAst} and the meaning of their payload and child slots. A list slot holds
+ * a list handle (see {@link FlatAst#listSize}), {@link FlatAst#NO_NODE} stands for a missing child or
+ * a null list.
+ */
+public enum NodeKind {
+    /** slots: statements list */
+    PROGRAM(1),
+    /** payload: symbol; slots: type, expression */
+    VAR_DECLARATION(2),
+    /** slots: lvalue, expression */
+    ASSIGNMENT(2),
+    /** slots: condition, then list, elsif list, else list */
+    IF(4),
+    /** slots: condition, body list */
+    WHILE(2),
+    /** payload: symbol; slots: start, end, body list */
+    FOR(3),
+    /** payload: symbol; slots: return type, params list, body list */
+    ROUTINE_DECLARATION(3),
+    /** payload: symbol; slots: type */
+    PARAM(1),
+    /** slots: expression */
+    RETURN(1),
+    /** slots: expression */
+    PRINT(1),
+    /** payload: symbol; slots: fields list */
+    RECORD_DECLARATION(1),
+    /** payload: symbol; slots: size (an INT_LITERAL), type */
+    ARRAY_DECLARATION(2),
+    /** payload: element type name symbol; slots: size (an INT_LITERAL) */
+    ARRAY_TYPE(1),
+    /** payload: symbol */
+    TYPE(0),
+    /** payload: operator TokenType ordinal; slots: left, right */
+    BINARY(2),
+    /** payload: operator TokenType ordinal; slots: operand */
+    UNARY(1),
+    /** payload: symbol */
+    IDENTIFIER(0),
+    /** payload: field name symbol or NO_SYMBOL; slots: base, index */
+    LVALUE(2),
+    /** payload: symbol; slots: arguments list */
+    FUNCTION_CALL(1),
+    /** payload: the value */
+    INT_LITERAL(0),
+    /** payload: index into the double constants */
+    DOUBLE_LITERAL(0),
+    /** payload: 1 for true, 0 for false */
+    BOOLEAN_LITERAL(0),
+    /** payload: index into the string constants */
+    STRING_LITERAL(0);
+
+    public final int slots;
+
+    NodeKind(int slots) {
+        this.slots = slots;
+    }
+}
@@ -0,0 +1,26 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Straight-line instructions entered only at the top and left only through the terminator.
+ */
+public final class BasicBlock {
+    public final int id;
+    public final List<Instruction> instructions = new ArrayList<>();
+    public Terminator terminator;
+
+    BasicBlock(int id) {
+        this.id = id;
+    }
+
+    public List<BasicBlock> successors() {
+        return terminator == null ? List.of() : terminator.successors();
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id;
+    }
+}
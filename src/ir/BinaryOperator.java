@@ -0,0 +1,38 @@
+package ir;
+
+import tokens.TokenType;
+
+/**
+ * Arithmetic and logical operators; the operand and result type of a {@link Instruction.Binary} is
+ * the type of its result. The shifts have no source syntax and only come from optimizations; their right
+ * operand is an integer shift distance.
+ */
+public enum BinaryOperator {
+    ADD("add"), SUB("sub"), MUL("mul"), DIV("div"), REM("rem"), AND("and"), OR("or"), SHL("shl"), SHR("shr");
+
+    private final String mnemonic;
+
+    BinaryOperator(String mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    public static BinaryOperator of(TokenType operator) {
+        return switch (operator) {
+            case PLUS -> ADD;
+            case MINUS -> SUB;
+            case STAR -> MUL;
+            case SLASH -> DIV;
+            case MOD -> REM;
+            case AND -> AND;
+            case OR -> OR;
+            default -> null;
+        };
+    }
+
+    /**
+     * The JVM instruction without its type prefix, e.g. {@code add} for {@code iadd} and {@code dadd}.
+     */
+    public String mnemonic() {
+        return mnemonic;
+    }
+}
@@ -0,0 +1,27 @@
+package ir;
+
+import types.PrimitiveType;
+import types.Type;
+
+/**
+ * An Integer, Double, Boolean or String literal, or null for an empty reference of {@code type}.
+ * Strings keep their quotes, as Jasmin's {@code ldc} expects them.
+ */
+public record Constant(Object value, Type type) implements Value {
+    public static Constant of(int value) {
+        return new Constant(value, PrimitiveType.INTEGER);
+    }
+
+    public static Constant of(double value) {
+        return new Constant(value, PrimitiveType.REAL);
+    }
+
+    public static Constant of(boolean value) {
+        return new Constant(value, PrimitiveType.BOOLEAN);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
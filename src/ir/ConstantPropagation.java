@@ -0,0 +1,313 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over a function in SSA form. Values
+ * start unknown and only rise towards "varies", and a block is only considered once an edge into it
+ * is found executable, so a constant that decides a branch keeps the other side, and everything it
+ * would have merged back in, from spoiling the result.
+ * <p>
+ * Afterwards uses of constant temporaries read the constant instead, decided branches become jumps,
+ * and blocks no executable edge reaches are dropped.
+ */
+public final class ConstantPropagation {
+    // Lattice: absent is "not yet known", a Constant is that value, VARIES is anything else
+    private static final Object VARIES = new Object();
+
+    private final IrFunction function;
+    private final Map<Temp, Object> values = new HashMap<>();
+    private final Map<Temp, List<Use>> uses = new HashMap<>();
+    private final Set<BasicBlock> executable = new HashSet<>();
+    private final Set<List<BasicBlock>> executableEdges = new HashSet<>();
+    private final Deque<List<BasicBlock>> flowWork = new ArrayDeque<>();
+    private final Deque<Temp> ssaWork = new ArrayDeque<>();
+
+    private record Use(BasicBlock block, Object user) {
+    }
+
+    private ConstantPropagation(IrFunction function) {
+        this.function = function;
+    }
+
+    public static void run(IrFunction function) {
+        ConstantPropagation propagation = new ConstantPropagation(function);
+        propagation.solve();
+        propagation.rewrite();
+    }
+
+    private void solve() {
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                recordUses(block, instruction, instruction.operands());
+            }
+            recordUses(block, block.terminator, block.terminator.operands());
+        }
+        BasicBlock entry = function.entry();
+        executable.add(entry);
+        visitBlock(entry);
+        while (!flowWork.isEmpty() || !ssaWork.isEmpty()) {
+            while (!flowWork.isEmpty()) {
+                List<BasicBlock> edge = flowWork.pop();
+                BasicBlock target = edge.get(1);
+                if (executable.add(target)) {
+                    visitBlock(target);
+                } else {
+                    for (Instruction instruction : target.instructions) {
+                        if (!(instruction instanceof Instruction.Phi)) {
+                            break;
+                        }
+                        visit(target, instruction);
+                    }
+                }
+            }
+            while (!ssaWork.isEmpty()) {
+                for (Use use : uses.getOrDefault(ssaWork.pop(), List.of())) {
+                    if (executable.contains(use.block())) {
+                        if (use.user() instanceof Instruction instruction) {
+                            visit(use.block(), instruction);
+                        } else {
+                            visit(use.block(), (Terminator) use.user());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void recordUses(BasicBlock block, Object user, List<Value> operands) {
+        for (Value operand : operands) {
+            if (operand instanceof Temp temp) {
+                uses.computeIfAbsent(temp, key -> new ArrayList<>()).add(new Use(block, user));
+            }
+        }
+    }
+
+    private void visitBlock(BasicBlock block) {
+        for (Instruction instruction : block.instructions) {
+            visit(block, instruction);
+        }
+        visit(block, block.terminator);
+    }
+
+    private void visit(BasicBlock block, Instruction instruction) {
+        if (!(instruction.result() instanceof Temp result)) {
+            return;
+        }
+        Object value = switch (instruction) {
+            case Instruction.Phi phi -> {
+                Object merged = null;
+                for (Map.Entry<BasicBlock, Value> incoming : phi.incoming().entrySet()) {
+                    if (executableEdges.contains(List.of(incoming.getKey(), block))) {
+                        merged = meet(merged, valueOf(incoming.getValue()));
+                    }
+                }
+                yield merged;
+            }
+            case Instruction.Copy copy -> valueOf(copy.source());
+            case Instruction.Binary binary -> fold(binary, valueOf(binary.left()), valueOf(binary.right()));
+            case Instruction.Compare compare -> {
+                Object left = valueOf(compare.left());
+                Object right = valueOf(compare.right());
+                if (left instanceof Constant l && right instanceof Constant r) {
+                    Boolean holds = holds(compare.relation(), l, r);
+                    yield holds == null ? VARIES : Constant.of(holds);
+                }
+                yield left == VARIES || right == VARIES ? VARIES : null;
+            }
+            case Instruction.Negate negate -> switch (valueOf(negate.operand())) {
+                case Constant constant when constant.value() instanceof Integer integer -> Constant.of(-integer);
+                case Constant constant when constant.value() instanceof Double real -> Constant.of(-real);
+                case null -> null;
+                default -> VARIES;
+            };
+            case Instruction.Not not -> switch (valueOf(not.operand())) {
+                case Constant constant when constant.value() instanceof Boolean bool -> Constant.of(!bool);
+                case null -> null;
+                default -> VARIES;
+            };
+            case Instruction.Convert convert -> switch (valueOf(convert.source())) {
+                case Constant constant when constant.value() instanceof Integer integer -> exactReal(integer.doubleValue());
+                case null -> null;
+                default -> VARIES;
+            };
+            default -> VARIES;
+        };
+        if (value instanceof Constant constant && !constant.type().equals(result.type())) {
+            value = VARIES;
+        }
+        Object old = values.get(result);
+        if (value != null && !value.equals(old) && old != VARIES) {
+            values.put(result, value);
+            ssaWork.push(result);
+        }
+    }
+
+    private void visit(BasicBlock block, Terminator terminator) {
+        if (terminator instanceof Terminator.Branch branch) {
+            Object left = valueOf(branch.left());
+            Object right = valueOf(branch.right());
+            if (left instanceof Constant l && right instanceof Constant r && holds(branch.relation(), l, r) != null) {
+                markEdge(block, holds(branch.relation(), l, r) ? branch.ifTrue() : branch.ifFalse());
+            } else if (left != null && right != null) {
+                markEdge(block, branch.ifTrue());
+                markEdge(block, branch.ifFalse());
+            }
+        } else {
+            for (BasicBlock successor : terminator.successors()) {
+                markEdge(block, successor);
+            }
+        }
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        List<BasicBlock> edge = List.of(from, to);
+        if (executableEdges.add(edge)) {
+            flowWork.push(edge);
+        }
+    }
+
+    private Object valueOf(Value value) {
+        return switch (value) {
+            case Constant constant -> constant;
+            case Temp temp -> values.get(temp);
+            case Variable variable -> VARIES;
+        };
+    }
+
+    private static Object meet(Object a, Object b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.equals(b) ? a : VARIES;
+    }
+
+    private static Object fold(Instruction.Binary binary, Object left, Object right) {
+        if (!(left instanceof Constant l) || !(right instanceof Constant r)) {
+            return left == VARIES || right == VARIES ? VARIES : null;
+        }
+        if (l.value() instanceof Integer a && r.value() instanceof Integer b) {
+            return switch (binary.operator()) {
+                case ADD -> Constant.of(a + b);
+                case SUB -> Constant.of(a - b);
+                case MUL -> Constant.of(a * b);
+                case DIV -> b == 0 ? VARIES : Constant.of(a / b);
+                case REM -> b == 0 ? VARIES : Constant.of(a % b);
+                case AND -> Constant.of(a & b);
+                case OR -> Constant.of(a | b);
+                case SHL -> Constant.of(a << b);
+                case SHR -> Constant.of(a >> b);
+            };
+        }
+        if (l.value() instanceof Double a && r.value() instanceof Double b) {
+            double result = switch (binary.operator()) {
+                case ADD -> a + b;
+                case SUB -> a - b;
+                case MUL -> a * b;
+                case DIV -> a / b;
+                case REM -> a % b;
+                default -> Double.NaN;
+            };
+            return exactReal(result);
+        }
+        if (l.value() instanceof Boolean a && r.value() instanceof Boolean b) {
+            return switch (binary.operator()) {
+                case AND -> Constant.of(a && b);
+                case OR -> Constant.of(a || b);
+                default -> VARIES;
+            };
+        }
+        return VARIES;
+    }
+
+    // Jasmin has no literal for infinities or NaN, and reads a real literal at float precision, so a
+    // result only folds when the emitted literal gives back exactly the value computed here
+    private static Object exactReal(double value) {
+        return Double.isFinite(value) && (double) (float) value == value ? Constant.of(value) : VARIES;
+    }
+
+    /**
+     * Whether {@code left relation right} holds, or null when it cannot be decided here.
+     */
+    private static Boolean holds(Relation relation, Constant left, Constant right) {
+        int order;
+        if (left.value() instanceof Integer a && right.value() instanceof Integer b) {
+            order = Integer.compare(a, b);
+        } else if (left.value() instanceof Double a && right.value() instanceof Double b) {
+            order = Double.compare(a, b);
+        } else if (left.value() instanceof Boolean a && right.value() instanceof Boolean b
+                && (relation == Relation.EQ || relation == Relation.NE)) {
+            order = a.equals(b) ? 0 : 1;
+        } else {
+            return null;
+        }
+        return switch (relation) {
+            case EQ -> order == 0;
+            case NE -> order != 0;
+            case LT -> order < 0;
+            case LE -> order <= 0;
+            case GT -> order > 0;
+            case GE -> order >= 0;
+        };
+    }
+
+    private void rewrite() {
+        for (BasicBlock block : function.blocks) {
+            if (!executable.contains(block)) {
+                continue;
+            }
+            List<Instruction> instructions = block.instructions;
+            for (int i = 0; i < instructions.size(); i++) {
+                // Phis keep reading the temporaries, so the definitions that feed them stay in place
+                if (!(instructions.get(i) instanceof Instruction.Phi)) {
+                    instructions.set(i, instructions.get(i).withOperands(this::constantOrSelf));
+                }
+            }
+            block.terminator = block.terminator.withOperands(this::constantOrSelf);
+            if (block.terminator instanceof Terminator.Branch branch
+                    && branch.left() instanceof Constant left && branch.right() instanceof Constant right) {
+                Boolean holds = holds(branch.relation(), left, right);
+                if (holds != null) {
+                    block.terminator = new Terminator.Jump(holds ? branch.ifTrue() : branch.ifFalse());
+                }
+            }
+        }
+        function.removeUnreachable();
+
+        Map<BasicBlock, List<BasicBlock>> predecessors = function.predecessors();
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Instruction.Phi phi) {
+                    phi.incoming().keySet().retainAll(predecessors.get(block));
+                }
+            }
+        }
+        removeUnusedConstants();
+    }
+
+    private Value constantOrSelf(Value value) {
+        return value instanceof Temp temp && values.get(temp) instanceof Constant constant ? constant : value;
+    }
+
+    // Constant definitions are free of side effects, so once nothing reads them they can go
+    private void removeUnusedConstants() {
+        boolean changed = true;
+        while (changed) {
+            Set<Value> read = new HashSet<>();
+            for (BasicBlock block : function.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    read.addAll(instruction.operands());
+                }
+                read.addAll(block.terminator.operands());
+            }
+            changed = false;
+            for (BasicBlock block : function.blocks) {
+                changed |= block.instructions.removeIf(instruction -> instruction.result() instanceof Temp temp
+                        && values.get(temp) instanceof Constant && !read.contains(temp));
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Deletes writes nothing reads: a copy into a variable that is not live after it, and a computation
+ * with no other effect whose temporary is never used. Liveness is solved backwards over the blocks;
+ * since deleting a write can end the liveness of what it read, this repeats until nothing changes.
+ * <p>
+ * Calls, stores and printing always stay, and so do divisions that may be by zero and loads, which
+ * may throw.
+ */
+public final class DeadStoreElimination {
+    private final IrFunction function;
+    private final Map<BasicBlock, Set<Value>> liveIn = new HashMap<>();
+
+    private DeadStoreElimination(IrFunction function) {
+        this.function = function;
+    }
+
+    /**
+     * Returns whether anything was deleted.
+     */
+    public static boolean run(IrFunction function) {
+        boolean changed = false;
+        while (new DeadStoreElimination(function).sweep()) {
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean sweep() {
+        solve();
+        boolean changed = false;
+        for (BasicBlock block : function.blocks) {
+            Set<Value> live = liveOut(block);
+            read(live, block.terminator.operands());
+            ListIterator<Instruction> instructions = block.instructions.listIterator(block.instructions.size());
+            while (instructions.hasPrevious()) {
+                Instruction instruction = instructions.previous();
+                Value result = instruction.result();
+                if (result != null && !live.contains(result) && removable(instruction)) {
+                    instructions.remove();
+                    changed = true;
+                    continue;
+                }
+                live.remove(result);
+                read(live, instruction.operands());
+            }
+        }
+        return changed;
+    }
+
+    private void solve() {
+        List<BasicBlock> blocks = function.blocks;
+        for (BasicBlock block : blocks) {
+            liveIn.put(block, new HashSet<>());
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                Set<Value> live = liveOut(block);
+                read(live, block.terminator.operands());
+                for (int j = block.instructions.size() - 1; j >= 0; j--) {
+                    Instruction instruction = block.instructions.get(j);
+                    live.remove(instruction.result());
+                    read(live, instruction.operands());
+                }
+                changed |= liveIn.get(block).addAll(live);
+            }
+        }
+    }
+
+    private Set<Value> liveOut(BasicBlock block) {
+        Set<Value> live = new HashSet<>();
+        for (BasicBlock successor : block.successors()) {
+            live.addAll(liveIn.get(successor));
+        }
+        return live;
+    }
+
+    private static void read(Set<Value> live, List<Value> operands) {
+        for (Value operand : operands) {
+            if (!(operand instanceof Constant)) {
+                live.add(operand);
+            }
+        }
+    }
+
+    private static boolean removable(Instruction instruction) {
+        return switch (instruction) {
+            case Instruction.Copy copy -> true;
+            case Instruction.Binary binary -> !binary.mayThrow();
+            case Instruction.Compare compare -> true;
+            case Instruction.Negate negate -> true;
+            case Instruction.Not not -> true;
+            case Instruction.Convert convert -> true;
+            case Instruction.NewRecord record -> true;
+            case Instruction.NewArray array -> true;
+            case Instruction.Stdout stdout -> true;
+            default -> false;
+        };
+    }
+}
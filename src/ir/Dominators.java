@@ -0,0 +1,152 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Dominator tree and dominance frontiers of a function's reachable blocks, computed with the iterative
+ * algorithm of Cooper, Harvey and Kennedy over reverse postorder. Stale once the CFG changes.
+ */
+public final class Dominators {
+    private final List<BasicBlock> order = new ArrayList<>();
+    private final Map<BasicBlock, Integer> index = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> idom = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> predecessors;
+    private Map<BasicBlock, Set<BasicBlock>> frontiers;
+
+    public Dominators(IrFunction function) {
+        predecessors = function.predecessors();
+        postorder(function.entry(), new HashSet<>());
+        Collections.reverse(order);
+        for (int i = 0; i < order.size(); i++) {
+            index.put(order.get(i), i);
+        }
+
+        BasicBlock entry = function.entry();
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                if (block == entry) {
+                    continue;
+                }
+                BasicBlock dominator = null;
+                for (BasicBlock predecessor : predecessors.get(block)) {
+                    if (idom.containsKey(predecessor)) {
+                        dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                    }
+                }
+                if (idom.get(block) != dominator) {
+                    idom.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+        for (BasicBlock block : order) {
+            children.put(block, new ArrayList<>());
+        }
+        for (BasicBlock block : order) {
+            if (block != entry) {
+                children.get(idom.get(block)).add(block);
+            }
+        }
+    }
+
+    private void postorder(BasicBlock block, Set<BasicBlock> visited) {
+        // Iterative, so long straight-line functions do not exhaust the Java stack
+        Deque<Iterator<BasicBlock>> stack = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+        visited.add(block);
+        stack.push(block.successors().iterator());
+        path.push(block);
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> successors = stack.peek();
+            if (successors.hasNext()) {
+                BasicBlock successor = successors.next();
+                if (visited.add(successor)) {
+                    stack.push(successor.successors().iterator());
+                    path.push(successor);
+                }
+            } else {
+                stack.pop();
+                order.add(path.pop());
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (index.get(a) > index.get(b)) {
+                a = idom.get(a);
+            }
+            while (index.get(b) > index.get(a)) {
+                b = idom.get(b);
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Reachable blocks, each after all of its dominators.
+     */
+    public List<BasicBlock> reversePostorder() {
+        return order;
+    }
+
+    /**
+     * The immediate dominator, or null for the entry.
+     */
+    public BasicBlock idom(BasicBlock block) {
+        BasicBlock dominator = idom.get(block);
+        return dominator == block ? null : dominator;
+    }
+
+    public List<BasicBlock> children(BasicBlock block) {
+        return children.get(block);
+    }
+
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        while (block != null) {
+            if (block == dominator) {
+                return true;
+            }
+            block = idom(block);
+        }
+        return false;
+    }
+
+    public List<BasicBlock> predecessors(BasicBlock block) {
+        return predecessors.get(block);
+    }
+
+    /**
+     * Blocks where the dominance of {@code block} ends: the first ones reachable from it that it does
+     * not strictly dominate.
+     */
+    public Set<BasicBlock> frontier(BasicBlock block) {
+        if (frontiers == null) {
+            frontiers = new HashMap<>();
+            for (BasicBlock each : order) {
+                frontiers.put(each, new LinkedHashSet<>());
+            }
+            for (BasicBlock join : order) {
+                List<BasicBlock> joinPredecessors = predecessors.get(join);
+                if (joinPredecessors.size() < 2) {
+                    continue;
+                }
+                for (BasicBlock predecessor : joinPredecessors) {
+                    if (!index.containsKey(predecessor)) {
+                        continue;
+                    }
+                    BasicBlock runner = predecessor;
+                    while (runner != null && runner != idom(join)) {
+                        frontiers.get(runner).add(join);
+                        runner = idom(runner);
+                    }
+                }
+            }
+        }
+        return frontiers.get(block);
+    }
+}
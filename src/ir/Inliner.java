@@ -0,0 +1,227 @@
+package ir;
+
+import symbols.SymbolTable;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Replaces calls to small routines with a copy of the routine's body. A parameter the body never
+ * assigns reads the argument directly; any other parameter, and every local of the body, gets a fresh
+ * variable in the caller's frame. Returns jump to the code after the call, which reads the returned
+ * value from the only return or from a variable all of them write.
+ * <p>
+ * Calls inside a copied body are considered too, except calls to a routine the code was already copied
+ * from, so recursion is never unrolled and a recursive routine keeps its own call.
+ */
+public final class Inliner {
+    /**
+     * Largest estimated bytecode size of a routine that is still copied into callers; the same limit
+     * HotSpot applies to routines that are not hot.
+     */
+    public static final int DEFAULT_BUDGET = 35;
+    // Inlining into a function stops once it grows past this, well below the JVM's 64K method limit
+    private static final int FUNCTION_LIMIT = 8000;
+
+    private final Function<MethodRef, IrFunction> bodies;
+    private final int budget;
+
+    /**
+     * {@code bodies} gives the lowered body of a routine that may be inlined, or null; the returned
+     * function is only read.
+     */
+    public Inliner(Function<MethodRef, IrFunction> bodies, int budget) {
+        this.bodies = bodies;
+        this.budget = budget;
+    }
+
+    public void inline(IrFunction function) {
+        if (budget > 0) {
+            new Expansion(function).run();
+        }
+    }
+
+    /**
+     * Rough bytecode size: an opcode for every instruction and terminator, a load for every operand and
+     * a constant pool index for calls, field accesses and jumps.
+     */
+    public static int estimatedSize(IrFunction function) {
+        int size = 0;
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                size += 1 + instruction.operands().size();
+                if (instruction instanceof Instruction.Call || instruction instanceof Instruction.Stdout
+                        || instruction instanceof Instruction.GetField || instruction instanceof Instruction.PutField) {
+                    size += 2;
+                }
+            }
+            size += 1 + block.terminator.operands().size();
+            if (!(block.terminator instanceof Terminator.Return)) {
+                size += 2;
+            }
+        }
+        return size;
+    }
+
+    private final class Expansion {
+        private final IrFunction function;
+        // Routines whose copied code each block belongs to, the function itself included
+        private final Map<BasicBlock, Set<String>> copiedFrom = new HashMap<>();
+        private int size;
+
+        Expansion(IrFunction function) {
+            this.function = function;
+        }
+
+        void run() {
+            for (BasicBlock block : function.blocks) {
+                copiedFrom.put(block, Set.of(function.name));
+            }
+            size = estimatedSize(function);
+
+            Deque<BasicBlock> work = new ArrayDeque<>(function.blocks);
+            while (!work.isEmpty() && size < FUNCTION_LIMIT) {
+                BasicBlock block = work.pop();
+                List<Instruction> instructions = block.instructions;
+                for (int i = 0; i < instructions.size(); i++) {
+                    if (instructions.get(i) instanceof Instruction.Call call) {
+                        IrFunction callee = inlinable(call, copiedFrom.get(block));
+                        if (callee != null) {
+                            expand(block, i, call, callee).forEach(work::push);
+                            break;
+                        }
+                    }
+                }
+            }
+            // A copied body that never returns leaves the code after its call unreachable
+            function.removeUnreachable();
+        }
+
+        private IrFunction inlinable(Instruction.Call call, Set<String> chain) {
+            if (chain.contains(call.method().name())) {
+                return null;
+            }
+            IrFunction callee = bodies.apply(call.method());
+            if (callee == null || callee.parameters.size() != call.arguments().size()
+                    || estimatedSize(callee) > budget) {
+                return null;
+            }
+            return callee;
+        }
+
+        // Splits the block at the call and places the copied body between the halves; returns the new
+        // blocks, which may hold more calls
+        private List<BasicBlock> expand(BasicBlock block, int index, Instruction.Call call, IrFunction callee) {
+            BasicBlock rest = function.newBlock();
+            List<Instruction> tail = block.instructions.subList(index + 1, block.instructions.size());
+            rest.instructions.addAll(tail);
+            tail.clear();
+            block.instructions.remove(index);
+            rest.terminator = block.terminator;
+
+            Map<Value, Value> values = new HashMap<>();
+            for (int i = 0; i < callee.parameters.size(); i++) {
+                Variable parameter = callee.parameters.get(i);
+                Value argument = call.arguments().get(i);
+                if (assigns(callee, parameter)) {
+                    Variable local = function.newVariable(parameter.declaration().symbol, parameter.type());
+                    block.instructions.add(new Instruction.Copy(local, argument));
+                    values.put(parameter, local);
+                } else {
+                    values.put(parameter, argument);
+                }
+            }
+            UnaryOperator<Value> mapping = value -> switch (value) {
+                case Constant constant -> constant;
+                case Temp temp -> values.computeIfAbsent(temp, key -> function.newTemp(temp.type()));
+                case Variable variable -> values.computeIfAbsent(variable,
+                        key -> function.newVariable(variable.declaration().symbol, variable.type()));
+            };
+
+            Map<BasicBlock, BasicBlock> copies = new LinkedHashMap<>();
+            int returns = 0;
+            for (BasicBlock original : callee.blocks) {
+                copies.put(original, function.newBlock());
+                if (original.terminator instanceof Terminator.Return) {
+                    returns++;
+                }
+            }
+            Value returned = call.result();
+            if (returned != null && returns > 1) {
+                returned = function.newVariable(SymbolTable.intern(callee.name), call.result().type());
+                rest.instructions.add(0, new Instruction.Copy(call.result(), returned));
+            }
+            for (Map.Entry<BasicBlock, BasicBlock> entry : copies.entrySet()) {
+                BasicBlock original = entry.getKey();
+                BasicBlock copy = entry.getValue();
+                for (Instruction instruction : original.instructions) {
+                    copy.instructions.add(copy(instruction, mapping));
+                }
+                if (original.terminator instanceof Terminator.Return ret) {
+                    if (returned != null && ret.value() != null) {
+                        copy.instructions.add(new Instruction.Copy(returned, mapping.apply(ret.value())));
+                    }
+                    copy.terminator = new Terminator.Jump(rest);
+                } else {
+                    copy.terminator = original.terminator.withOperands(mapping).withTargets(copies::get);
+                }
+            }
+            block.terminator = new Terminator.Jump(copies.get(callee.entry()));
+
+            Set<String> chain = new HashSet<>(copiedFrom.get(block));
+            chain.add(callee.name);
+            copies.values().forEach(copy -> copiedFrom.put(copy, chain));
+            copiedFrom.put(rest, copiedFrom.get(block));
+
+            List<BasicBlock> placed = new ArrayList<>(copies.values());
+            placed.add(rest);
+            function.blocks.addAll(function.blocks.indexOf(block) + 1, placed);
+            size += estimatedSize(callee);
+            return placed;
+        }
+
+    }
+
+    private static boolean assigns(IrFunction function, Variable variable) {
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (variable.equals(instruction.result())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The instruction with its result and operands renamed
+    private static Instruction copy(Instruction instruction, UnaryOperator<Value> mapping) {
+        Instruction mapped = instruction.withOperands(mapping);
+        return switch (mapped) {
+            case Instruction.Copy copy -> new Instruction.Copy(mapping.apply(copy.target()), copy.source());
+            case Instruction.Binary binary -> new Instruction.Binary(
+                    temp(binary.result(), mapping), binary.operator(), binary.left(), binary.right());
+            case Instruction.Compare compare -> new Instruction.Compare(
+                    temp(compare.result(), mapping), compare.relation(), compare.left(), compare.right());
+            case Instruction.Negate negate -> new Instruction.Negate(temp(negate.result(), mapping), negate.operand());
+            case Instruction.Not not -> new Instruction.Not(temp(not.result(), mapping), not.operand());
+            case Instruction.Convert convert -> new Instruction.Convert(temp(convert.result(), mapping), convert.source());
+            case Instruction.Call call -> new Instruction.Call(
+                    call.result() == null ? null : temp(call.result(), mapping), call.method(), call.arguments());
+            case Instruction.Stdout stdout -> new Instruction.Stdout(temp(stdout.result(), mapping));
+            case Instruction.NewRecord record -> new Instruction.NewRecord(temp(record.result(), mapping), record.record());
+            case Instruction.NewArray array -> new Instruction.NewArray(temp(array.result(), mapping), array.array());
+            case Instruction.GetField field -> new Instruction.GetField(
+                    temp(field.result(), mapping), field.object(), field.record(), field.field());
+            case Instruction.ArrayLoad load -> new Instruction.ArrayLoad(temp(load.result(), mapping), load.array(), load.index());
+            case Instruction.Phi phi -> throw new IllegalStateException("Cannot inline a function in SSA form");
+            case Instruction.Print print -> print;
+            case Instruction.PutField put -> put;
+            case Instruction.ArrayStore store -> store;
+        };
+    }
+
+    private static Temp temp(Temp temp, UnaryOperator<Value> mapping) {
+        return (Temp) mapping.apply(temp);
+    }
+}
@@ -0,0 +1,352 @@
+package ir;
+
+import types.ArrayType;
+import types.PrimitiveType;
+import types.RecordType;
+import types.Type;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A three-address instruction inside a {@link BasicBlock}. Every instruction reads its operands in
+ * order, which is also the order lowering pushes them, and defines at most one value.
+ */
+public sealed interface Instruction {
+    /**
+     * The temporary or variable this instruction writes, or null.
+     */
+    Value result();
+
+    List<Value> operands();
+
+    /**
+     * The same instruction reading {@code mapping} of each operand; the result is kept.
+     */
+    Instruction withOperands(UnaryOperator<Value> mapping);
+
+    /**
+     * {@code target := source}; the only instruction that writes a {@link Variable}.
+     */
+    record Copy(Value target, Value source) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Copy(target, mapping.apply(source));
+        }
+
+        @Override
+        public Value result() {
+            return target;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(source);
+        }
+
+        @Override
+        public String toString() {
+            return target + " = " + source;
+        }
+    }
+
+    record Binary(Temp result, BinaryOperator operator, Value left, Value right) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Binary(result, operator, mapping.apply(left), mapping.apply(right));
+        }
+
+        /**
+         * Whether this is an integer division or remainder by something that may be zero.
+         */
+        public boolean mayThrow() {
+            boolean division = operator == BinaryOperator.DIV || operator == BinaryOperator.REM;
+            return division && result.type() != PrimitiveType.REAL
+                    && !(right instanceof Constant constant && !Integer.valueOf(0).equals(constant.value()));
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = " + left + " " + operator + " " + right;
+        }
+    }
+
+    /**
+     * A boolean from comparing two operands of the same type.
+     */
+    record Compare(Temp result, Relation relation, Value left, Value right) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Compare(result, relation, mapping.apply(left), mapping.apply(right));
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = " + left + " " + relation + " " + right;
+        }
+    }
+
+    record Negate(Temp result, Value operand) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Negate(result, mapping.apply(operand));
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(operand);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = -" + operand;
+        }
+    }
+
+    record Not(Temp result, Value operand) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Not(result, mapping.apply(operand));
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(operand);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = not " + operand;
+        }
+    }
+
+    /**
+     * Integer to real.
+     */
+    record Convert(Temp result, Value source) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Convert(result, mapping.apply(source));
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(source);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = real " + source;
+        }
+    }
+
+    /**
+     * {@code result} is null when the routine returns nothing.
+     */
+    record Call(Temp result, MethodRef method, List<Value> arguments) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Call(result, method, arguments.stream().map(mapping).toList());
+        }
+
+        @Override
+        public List<Value> operands() {
+            return arguments;
+        }
+
+        @Override
+        public String toString() {
+            return (result == null ? "" : result + " = ") + "call " + method.name() + arguments;
+        }
+    }
+
+    /**
+     * Loads {@code System.out} for a following {@link Print}.
+     */
+    record Stdout(Temp result) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return this;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of();
+        }
+
+        @Override
+        public String toString() {
+            return result + " = stdout";
+        }
+    }
+
+    record Print(Value stream, Value value) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new Print(mapping.apply(stream), mapping.apply(value));
+        }
+
+        @Override
+        public Value result() {
+            return null;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(stream, value);
+        }
+
+        @Override
+        public String toString() {
+            return "print " + value;
+        }
+    }
+
+    record NewRecord(Temp result, RecordType record) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return this;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of();
+        }
+
+        @Override
+        public String toString() {
+            return result + " = new " + record.name();
+        }
+    }
+
+    record NewArray(Temp result, ArrayType array) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return this;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of();
+        }
+
+        @Override
+        public String toString() {
+            return result + " = new " + array;
+        }
+    }
+
+    record GetField(Temp result, Value object, RecordType record, String field) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new GetField(result, mapping.apply(object), record, field);
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(object);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = " + object + "." + field;
+        }
+    }
+
+    record PutField(Value object, RecordType record, String field, Value value) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new PutField(mapping.apply(object), record, field, mapping.apply(value));
+        }
+
+        @Override
+        public Value result() {
+            return null;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(object, value);
+        }
+
+        @Override
+        public String toString() {
+            return object + "." + field + " = " + value;
+        }
+    }
+
+    record ArrayLoad(Temp result, Value array, Value index) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new ArrayLoad(result, mapping.apply(array), mapping.apply(index));
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(array, index);
+        }
+
+        @Override
+        public String toString() {
+            return result + " = " + array + "[" + index + "]";
+        }
+    }
+
+    record ArrayStore(Value array, Value index, Value value, Type element) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            return new ArrayStore(mapping.apply(array), mapping.apply(index), mapping.apply(value), element);
+        }
+
+        @Override
+        public Value result() {
+            return null;
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(array, index, value);
+        }
+
+        @Override
+        public String toString() {
+            return array + "[" + index + "] = " + value;
+        }
+    }
+
+    /**
+     * SSA merge: the value {@code incoming} holds for the predecessor control arrived from. Only exists
+     * between {@link SsaForm#construct} and {@link SsaForm#destruct}, always at the top of a block.
+     */
+    record Phi(Temp result, Map<BasicBlock, Value> incoming) implements Instruction {
+        @Override
+        public Instruction withOperands(UnaryOperator<Value> mapping) {
+            Map<BasicBlock, Value> mapped = new LinkedHashMap<>();
+            incoming.forEach((block, value) -> mapped.put(block, mapping.apply(value)));
+            return new Phi(result, mapped);
+        }
+
+        @Override
+        public List<Value> operands() {
+            return new ArrayList<>(incoming.values());
+        }
+
+        @Override
+        public String toString() {
+            return result + " = phi " + incoming;
+        }
+    }
+}
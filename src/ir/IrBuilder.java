@@ -0,0 +1,386 @@
+package ir;
+
+import node.*;
+import symbols.Declaration;
+import tokens.TokenType;
+import types.ArrayType;
+import types.PrimitiveType;
+import types.RecordType;
+import types.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lowers the statements of one method from the type-checked AST to an {@link IrFunction}. Integers are
+ * converted explicitly wherever a real is expected, so every instruction sees operands of one type.
+ */
+public final class IrBuilder {
+    /**
+     * What the builder needs from the code generator: routine signatures, and somewhere to send the
+     * routines and records declared inside the body, which are emitted outside it.
+     */
+    public interface Declarations {
+        MethodRef method(int symbol);
+
+        void record(RecordDeclarationNode record);
+
+        void routine(RoutineDeclarationNode routine);
+    }
+
+    private final IrFunction function;
+    private final Declarations declarations;
+    private BasicBlock current;
+
+    private IrBuilder(IrFunction function, Declarations declarations) {
+        this.function = function;
+        this.declarations = declarations;
+        this.current = function.newBlock();
+        function.blocks.add(current);
+    }
+
+    public static IrFunction buildMain(List<ASTNode> statements, Declarations declarations) {
+        IrBuilder builder = new IrBuilder(new IrFunction("main", List.of(), null, 0), declarations);
+        return builder.build(statements);
+    }
+
+    public static IrFunction buildRoutine(RoutineDeclarationNode routine, MethodRef method, int depth,
+                                          Declarations declarations) {
+        List<Variable> parameters = new ArrayList<>();
+        for (ParamNode param : routine.params) {
+            parameters.add(new Variable(param.declaration));
+        }
+        IrFunction function = new IrFunction(method.name(), parameters, method.returnType(), depth);
+        return new IrBuilder(function, declarations).build(routine.body);
+    }
+
+    private IrFunction build(List<ASTNode> statements) {
+        statements(statements);
+        if (current.terminator == null) {
+            current.terminator = new Terminator.Return(function.returnType == null ? null : zero(function.returnType));
+        }
+        function.removeUnreachable();
+        return function;
+    }
+
+    private void statements(List<ASTNode> statements) {
+        if (statements != null) {
+            for (ASTNode statement : statements) {
+                statement(statement);
+            }
+        }
+    }
+
+    private void statement(ASTNode node) {
+        switch (node) {
+            case VarDeclarationNode var -> varDeclaration(var);
+            case ArrayDeclarationNode array -> {
+                Temp created = function.newTemp(array.resolvedType);
+                emit(new Instruction.NewArray(created, (ArrayType) array.resolvedType));
+                emit(new Instruction.Copy(variable(array.declaration, array.identifier), created));
+            }
+            case AssignmentNode assignment -> assignment(assignment);
+            case PrintStatementNode print -> {
+                Type type = print.expression.resolvedType;
+                if (type == null) {
+                    value(print.expression);
+                    return;
+                }
+                Temp stream = function.newTemp(null);
+                emit(new Instruction.Stdout(stream));
+                emit(new Instruction.Print(stream, value(print.expression)));
+            }
+            case IfStatementNode ifStatement -> ifStatement(ifStatement);
+            case WhileLoopNode whileLoop -> whileLoop(whileLoop);
+            case ForLoopNode forLoop -> forLoop(forLoop);
+            case ReturnStatementNode returnStatement -> {
+                Value value = returnStatement.expression == null ? null
+                        : widen(value(returnStatement.expression), function.returnType);
+                current.terminator = new Terminator.Return(value);
+                // Anything after the return lands in a block nothing jumps to
+                startBlock(function.newBlock());
+            }
+            case RoutineDeclarationNode routine -> declarations.routine(routine);
+            case RecordDeclarationNode record -> declarations.record(record);
+            case FunctionCallNode call -> call(call);
+            default -> value(node);
+        }
+    }
+
+    private void varDeclaration(VarDeclarationNode node) {
+        Declaration declaration = node.declaration;
+        Variable target = variable(declaration, node.identifier);
+        Value value;
+        if (node.expression != null && !(node.type instanceof ArrayTypeNode)) {
+            value = value(node.expression);
+        } else if (declaration.type instanceof RecordType record) {
+            Temp created = function.newTemp(record);
+            emit(new Instruction.NewRecord(created, record));
+            value = created;
+        } else if (declaration.type instanceof ArrayType array) {
+            Temp created = function.newTemp(array);
+            emit(new Instruction.NewArray(created, array));
+            value = created;
+        } else {
+            value = zero(declaration.type);
+        }
+        emit(new Instruction.Copy(target, widen(value, declaration.type)));
+    }
+
+    private void assignment(AssignmentNode node) {
+        switch (node.lvalue) {
+            case IdentifierNode identifier -> {
+                Value value = value(node.expression);
+                if (identifier.declaration != null) {
+                    Variable target = variable(identifier.declaration, identifier.name);
+                    emit(new Instruction.Copy(target, widen(value, target.type())));
+                }
+            }
+            case LValueNode lvalue when lvalue.field != null -> {
+                Value object = value(lvalue.base);
+                if (!(object.type() instanceof RecordType record)) {
+                    throw new UnsupportedOperationException("Base type must be a user-defined record.");
+                }
+                Value value = widen(value(node.expression), lvalue.resolvedType);
+                emit(new Instruction.PutField(object, record, lvalue.field, value));
+            }
+            case LValueNode lvalue -> {
+                Value array = value(lvalue.base);
+                Value index = value(lvalue.index);
+                Value value = widen(value(node.expression), lvalue.resolvedType);
+                emit(new Instruction.ArrayStore(array, index, value, lvalue.resolvedType));
+            }
+            default -> throw new UnsupportedOperationException("Cannot assign to " + node.lvalue.getClass().getSimpleName());
+        }
+    }
+
+    // if c1 then A elsif c2 then B else C end: each condition falls to the next on false
+    private void ifStatement(IfStatementNode node) {
+        BasicBlock end = function.newBlock();
+        List<ASTNode> conditions = new ArrayList<>();
+        List<List<ASTNode>> bodies = new ArrayList<>();
+        conditions.add(node.condition);
+        bodies.add(node.thenStatements);
+        if (node.elsifStatements != null) {
+            for (ASTNode elsif : node.elsifStatements) {
+                IfStatementNode branch = (IfStatementNode) elsif;
+                conditions.add(branch.condition);
+                bodies.add(branch.thenStatements);
+            }
+        }
+        for (int i = 0; i < conditions.size(); i++) {
+            BasicBlock body = function.newBlock();
+            BasicBlock next = function.newBlock();
+            condition(conditions.get(i), body, next);
+            startBlock(body);
+            statements(bodies.get(i));
+            jump(end);
+            startBlock(next);
+        }
+        statements(node.elseStatements);
+        jump(end);
+        startBlock(end);
+    }
+
+    private void whileLoop(WhileLoopNode node) {
+        BasicBlock header = function.newBlock();
+        BasicBlock body = function.newBlock();
+        BasicBlock exit = function.newBlock();
+        jump(header);
+        startBlock(header);
+        condition(node.condition, body, exit);
+        startBlock(body);
+        statements(node.body);
+        jump(header);
+        startBlock(exit);
+    }
+
+    // The bound is evaluated before every iteration, as the loop test reads it
+    private void forLoop(ForLoopNode node) {
+        Variable counter = variable(node.declaration, node.identifier);
+        emit(new Instruction.Copy(counter, value(node.startExpression)));
+        BasicBlock header = function.newBlock();
+        BasicBlock body = function.newBlock();
+        BasicBlock exit = function.newBlock();
+        jump(header);
+        startBlock(header);
+        current.terminator = new Terminator.Branch(Relation.LE, counter, value(node.endExpression), body, exit);
+        startBlock(body);
+        statements(node.body);
+        Temp next = function.newTemp(PrimitiveType.INTEGER);
+        emit(new Instruction.Binary(next, BinaryOperator.ADD, counter, Constant.of(1)));
+        emit(new Instruction.Copy(counter, next));
+        jump(header);
+        startBlock(exit);
+    }
+
+    /**
+     * Ends the current block with a branch on {@code condition}.
+     */
+    private void condition(ASTNode condition, BasicBlock ifTrue, BasicBlock ifFalse) {
+        if (condition instanceof BinaryOperationNode binary && Relation.of(binary.operator) != null) {
+            Value[] operands = comparedOperands(binary);
+            current.terminator = new Terminator.Branch(Relation.of(binary.operator), operands[0], operands[1], ifTrue, ifFalse);
+        } else if (condition instanceof UnaryOperationNode unary && unary.operator == TokenType.NOT) {
+            condition(unary.operand, ifFalse, ifTrue);
+        } else {
+            current.terminator = new Terminator.Branch(Relation.NE, value(condition), Constant.of(false), ifTrue, ifFalse);
+        }
+    }
+
+    private Value value(ASTNode node) {
+        return switch (node) {
+            case LiteralNode literal -> literal(literal);
+            case IdentifierNode identifier -> {
+                if (identifier.declaration == null) {
+                    throw new UnsupportedOperationException("Unknown variable " + identifier.name);
+                }
+                if (identifier.declaration.type == null) {
+                    throw new UnsupportedOperationException("Unsupported variable type for " + identifier.name);
+                }
+                yield variable(identifier.declaration, identifier.name);
+            }
+            case BinaryOperationNode binary -> binary(binary);
+            case UnaryOperationNode unary -> {
+                Value operand = value(unary.operand);
+                Temp result = function.newTemp(operand.type());
+                emit(unary.operator == TokenType.NOT ? new Instruction.Not(result, operand) : new Instruction.Negate(result, operand));
+                yield result;
+            }
+            case FunctionCallNode call -> {
+                Temp result = call(call);
+                if (result == null) {
+                    throw new UnsupportedOperationException("Routine " + call.identifier + " returns no value.");
+                }
+                yield result;
+            }
+            case LValueNode lvalue -> lvalue(lvalue);
+            default -> throw new UnsupportedOperationException("Unsupported ASTNode: " + node.getClass().getSimpleName());
+        };
+    }
+
+    private Value literal(LiteralNode node) {
+        return switch (node.value) {
+            case Integer integer -> Constant.of(integer);
+            case Double real -> Constant.of(real);
+            case Boolean bool -> Constant.of(bool);
+            case String string -> new Constant(string, PrimitiveType.STRING);
+            case TypeNode type when node.resolvedType instanceof RecordType record -> {
+                Temp created = function.newTemp(record);
+                emit(new Instruction.NewRecord(created, record));
+                yield created;
+            }
+            case TypeNode type -> new Constant(null, node.resolvedType);
+            default -> throw new UnsupportedOperationException("Unsupported literal type: " + node.value.getClass().getSimpleName());
+        };
+    }
+
+    private Value binary(BinaryOperationNode node) {
+        Relation relation = Relation.of(node.operator);
+        if (relation != null) {
+            Value[] operands = comparedOperands(node);
+            Temp result = function.newTemp(PrimitiveType.BOOLEAN);
+            emit(new Instruction.Compare(result, relation, operands[0], operands[1]));
+            return result;
+        }
+        BinaryOperator operator = BinaryOperator.of(node.operator);
+        if (operator == null || node.resolvedType == null) {
+            throw new UnsupportedOperationException("Unsupported operator: " + node.operator);
+        }
+        Value left = widen(value(node.left), node.resolvedType);
+        Value right = widen(value(node.right), node.resolvedType);
+        Temp result = function.newTemp(node.resolvedType);
+        emit(new Instruction.Binary(result, operator, left, right));
+        return result;
+    }
+
+    // Comparisons look at the operands: one real operand makes both real
+    private Value[] comparedOperands(BinaryOperationNode node) {
+        Value left = value(node.left);
+        Value right = value(node.right);
+        if (left.type() == PrimitiveType.REAL || right.type() == PrimitiveType.REAL) {
+            left = widen(left, PrimitiveType.REAL);
+            right = widen(right, PrimitiveType.REAL);
+        }
+        return new Value[]{left, right};
+    }
+
+    private Temp call(FunctionCallNode node) {
+        MethodRef method = declarations.method(node.symbol);
+        if (method == null) {
+            throw new UnsupportedOperationException("Unknown routine " + node.identifier);
+        }
+        List<Value> arguments = new ArrayList<>();
+        for (int i = 0; i < node.arguments.size(); i++) {
+            Value argument = value(node.arguments.get(i));
+            arguments.add(i < method.parameters().size() ? widen(argument, method.parameters().get(i)) : argument);
+        }
+        Temp result = method.returnType() == null ? null : function.newTemp(method.returnType());
+        emit(new Instruction.Call(result, method, arguments));
+        return result;
+    }
+
+    private Value lvalue(LValueNode node) {
+        Value base = value(node.base);
+        if (node.field != null) {
+            if (!(base.type() instanceof RecordType record)) {
+                throw new UnsupportedOperationException("Base type must be a user-defined record.");
+            }
+            Temp result = function.newTemp(node.resolvedType);
+            emit(new Instruction.GetField(result, base, record, node.field));
+            return result;
+        }
+        Value index = value(node.index);
+        Temp result = function.newTemp(node.resolvedType);
+        emit(new Instruction.ArrayLoad(result, base, index));
+        return result;
+    }
+
+    private Variable variable(Declaration declaration, String name) {
+        if (declaration.depth != function.depth) {
+            throw new UnsupportedOperationException("Variable " + name + " is not a local of the enclosing routine.");
+        }
+        return new Variable(declaration);
+    }
+
+    // Integer values stored into a real slot, field or parameter are converted first
+    private Value widen(Value value, Type target) {
+        if (target != PrimitiveType.REAL || value.type() != PrimitiveType.INTEGER) {
+            return value;
+        }
+        if (value instanceof Constant constant) {
+            return Constant.of(((Integer) constant.value()).doubleValue());
+        }
+        Temp result = function.newTemp(PrimitiveType.REAL);
+        emit(new Instruction.Convert(result, value));
+        return result;
+    }
+
+    private static Value zero(Type type) {
+        if (type == PrimitiveType.INTEGER) {
+            return Constant.of(0);
+        } else if (type == PrimitiveType.REAL) {
+            return Constant.of(0.0);
+        } else if (type == PrimitiveType.BOOLEAN) {
+            return Constant.of(false);
+        } else if (type == PrimitiveType.STRING) {
+            return new Constant("\"\"", PrimitiveType.STRING);
+        } else if (type == null) {
+            throw new UnsupportedOperationException("Unsupported variable type");
+        }
+        return new Constant(null, type);
+    }
+
+    private void emit(Instruction instruction) {
+        current.instructions.add(instruction);
+    }
+
+    private void jump(BasicBlock target) {
+        current.terminator = new Terminator.Jump(target);
+    }
+
+    private void startBlock(BasicBlock block) {
+        current = block;
+        function.blocks.add(block);
+    }
+}
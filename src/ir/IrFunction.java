@@ -0,0 +1,165 @@
+package ir;
+
+import symbols.Declaration;
+import types.PrimitiveType;
+import types.Type;
+
+import java.util.*;
+
+/**
+ * The control-flow graph of one method: the program's main method or a routine. Blocks are kept in
+ * layout order, entry first, which is also the order lowering emits them.
+ */
+public final class IrFunction {
+    public final String name;
+    public final List<Variable> parameters;
+    public final Type returnType;
+    // Nesting depth of the frame, as in Declaration.depth
+    public final int depth;
+    public final List<BasicBlock> blocks = new ArrayList<>();
+    private int nextBlock;
+    private int nextTemp;
+    // First slot no variable uses yet; found when the first variable is added
+    private int nextSlot = -1;
+
+    public IrFunction(String name, List<Variable> parameters, Type returnType, int depth) {
+        this.name = name;
+        this.parameters = parameters;
+        this.returnType = returnType;
+        this.depth = depth;
+    }
+
+    public BasicBlock entry() {
+        return blocks.getFirst();
+    }
+
+    /**
+     * A block that is not yet placed in {@link #blocks}.
+     */
+    public BasicBlock newBlock() {
+        return new BasicBlock(nextBlock++);
+    }
+
+    public Temp newTemp(Type type) {
+        return new Temp(nextTemp++, type);
+    }
+
+    /**
+     * A variable in a slot of its own, for a value an optimization keeps across blocks or iterations.
+     * {@code symbol} only names it in dumps.
+     */
+    public Variable newVariable(int symbol, Type type) {
+        if (nextSlot < 0) {
+            nextSlot = 0;
+            List<Value> values = new ArrayList<>(parameters);
+            for (BasicBlock block : blocks) {
+                for (Instruction instruction : block.instructions) {
+                    values.add(instruction.result());
+                    values.addAll(instruction.operands());
+                }
+                values.addAll(block.terminator.operands());
+            }
+            for (Value value : values) {
+                if (value instanceof Variable variable) {
+                    nextSlot = Math.max(nextSlot, variable.declaration().slot + variable.declaration().size);
+                }
+            }
+        }
+        int size = type == PrimitiveType.REAL ? 2 : 1;
+        Declaration declaration = new Declaration(Declaration.Kind.VARIABLE, symbol, depth, nextSlot, size);
+        declaration.type = type;
+        nextSlot += size;
+        return new Variable(declaration);
+    }
+
+    public Map<BasicBlock, List<BasicBlock>> predecessors() {
+        Map<BasicBlock, List<BasicBlock>> predecessors = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            predecessors.putIfAbsent(block, new ArrayList<>());
+            for (BasicBlock successor : block.successors()) {
+                predecessors.computeIfAbsent(successor, key -> new ArrayList<>()).add(block);
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Drops blocks no path from the entry reaches, such as code after a return. Returns whether any
+     * were dropped.
+     */
+    public boolean removeUnreachable() {
+        Set<BasicBlock> reached = new HashSet<>();
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        work.push(entry());
+        while (!work.isEmpty()) {
+            BasicBlock block = work.pop();
+            if (reached.add(block)) {
+                block.successors().forEach(work::push);
+            }
+        }
+        return blocks.retainAll(reached);
+    }
+
+    /**
+     * Joins every block ending in a jump with its target when nothing else enters the target, undoing
+     * the splits inlining and branch pruning leave behind. Returns whether any were joined.
+     */
+    public boolean mergeStraightLines() {
+        Map<BasicBlock, List<BasicBlock>> predecessors = predecessors();
+        Set<BasicBlock> merged = new HashSet<>();
+        for (BasicBlock block : blocks) {
+            if (merged.contains(block)) {
+                continue;
+            }
+            while (block.terminator instanceof Terminator.Jump jump && jump.target() != entry()
+                    && jump.target() != block && predecessors.get(jump.target()).size() == 1) {
+                BasicBlock target = jump.target();
+                block.instructions.addAll(target.instructions);
+                block.terminator = target.terminator;
+                merged.add(target);
+            }
+        }
+        return blocks.removeAll(merged);
+    }
+
+    /**
+     * Sends control that enters a block with nothing but a jump straight on to where it leads, and
+     * turns a branch whose two targets are the same into a jump. Returns whether anything changed.
+     */
+    public boolean bypassEmptyBlocks() {
+        boolean changed = false;
+        for (BasicBlock block : blocks) {
+            Terminator terminator = block.terminator.withTargets(this::skipEmpty);
+            if (terminator instanceof Terminator.Branch branch && branch.ifTrue() == branch.ifFalse()) {
+                terminator = new Terminator.Jump(branch.ifTrue());
+            }
+            if (!terminator.equals(block.terminator)) {
+                block.terminator = terminator;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private BasicBlock skipEmpty(BasicBlock target) {
+        Set<BasicBlock> seen = new HashSet<>();
+        while (target != entry() && target.instructions.isEmpty() && target.terminator instanceof Terminator.Jump jump
+                && seen.add(target)) {
+            target = jump.target();
+        }
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(name).append(parameters).append(":\n");
+        for (BasicBlock block : blocks) {
+            text.append(block).append(":\n");
+            for (Instruction instruction : block.instructions) {
+                text.append("  ").append(instruction).append("\n");
+            }
+            text.append("  ").append(block.terminator).append("\n");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package ir;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The optimizations run on every function between {@link IrBuilder} and {@link JasminEmitter}. One
+ * optimizer serves every function of a program and may be used from several threads.
+ */
+public final class IrOptimizer {
+    private final Inliner inliner;
+    private final SideEffects effects;
+    private final Map<String, Integer> eliminated = new ConcurrentHashMap<>();
+    private final Set<String> looped = ConcurrentHashMap.newKeySet();
+
+    /**
+     * {@code bodies} gives the lowered body of a routine that may be inlined or looked into, or null;
+     * see {@link Inliner} for {@code inlineBudget}.
+     */
+    public IrOptimizer(Function<MethodRef, IrFunction> bodies, int inlineBudget) {
+        inliner = new Inliner(bodies, inlineBudget);
+        effects = new SideEffects(bodies);
+    }
+
+    public void optimize(IrFunction function) {
+        // Before inlining, which would otherwise copy a body into its own tail
+        if (TailCallElimination.run(function)) {
+            looped.add(function.name);
+        }
+        // Inlining ahead of the rest, so constant arguments reach the copied bodies
+        inliner.inline(function);
+        SsaForm ssa = SsaForm.construct(function);
+        ConstantPropagation.run(function);
+        eliminated.put(function.name, ValueNumbering.run(function, effects));
+        ssa.destruct();
+        LoopInvariantCodeMotion.run(function, effects);
+        StrengthReduction.run(function);
+        // A deleted store can empty a block, and bypassing it can fold a branch whose operands then die
+        boolean changed = true;
+        while (changed) {
+            changed = DeadStoreElimination.run(function);
+            changed |= function.bypassEmptyBlocks();
+            changed |= function.removeUnreachable();
+            changed |= function.mergeStraightLines();
+        }
+    }
+
+    /**
+     * How many redundant expressions {@link ValueNumbering} removed from each function optimized so far,
+     * by name.
+     */
+    public Map<String, Integer> eliminatedExpressions() {
+        return new TreeMap<>(eliminated);
+    }
+
+    /**
+     * The functions optimized so far whose tail calls to themselves {@link TailCallElimination} turned
+     * into loops.
+     */
+    public Set<String> tailRecursiveFunctions() {
+        return new TreeSet<>(looped);
+    }
+}
@@ -0,0 +1,456 @@
+package ir;
+
+import types.ArrayType;
+import types.PrimitiveType;
+import types.Type;
+
+import java.util.*;
+
+/**
+ * Lowers an {@link IrFunction} to the body of a Jasmin method. A temporary used once, later in the
+ * block that defines it, stays on the operand stack when the instructions between leave it at the
+ * right depth; every other temporary gets a local slot above the variables.
+ */
+public final class JasminEmitter {
+    private final IrFunction function;
+    private final StringBuilder code = new StringBuilder();
+    private final Map<Temp, Integer> uses = new HashMap<>();
+    private final Set<Temp> stacked = new HashSet<>();
+    private final Map<Temp, Integer> tempSlots = new HashMap<>();
+    private final Map<BasicBlock, String> labels = new HashMap<>();
+    private int nextLabel;
+    private int maxLocals;
+    private int stack;
+    private int maxStack;
+
+    public JasminEmitter(IrFunction function) {
+        this.function = function;
+    }
+
+    /**
+     * Operand stack depth the emitted code needs; valid after {@link #emit}.
+     */
+    public int maxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Local variable slots the emitted code uses, parameters included; valid after {@link #emit}.
+     */
+    public int maxLocals() {
+        return maxLocals;
+    }
+
+    public String emit() {
+        countUses();
+        stackify();
+        for (Temp temp : uses.keySet()) {
+            if (!stacked.contains(temp) && uses.get(temp) > 0) {
+                tempSlots.put(temp, 0);
+            }
+        }
+        // Temporaries go above every variable, in a fixed order so the output is deterministic
+        List<Temp> spilled = new ArrayList<>(tempSlots.keySet());
+        spilled.sort(Comparator.comparingInt(Temp::id));
+        for (Temp temp : spilled) {
+            tempSlots.put(temp, maxLocals);
+            maxLocals += size(temp.type());
+        }
+
+        List<BasicBlock> blocks = function.blocks;
+        for (BasicBlock block : blocks) {
+            for (BasicBlock successor : block.successors()) {
+                labels.computeIfAbsent(successor, key -> "L" + blocks.indexOf(key));
+            }
+        }
+        nextLabel = blocks.size();
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            String label = labels.get(block);
+            if (label != null) {
+                code.append(label).append(":\n");
+            }
+            emitBlock(block, i + 1 < blocks.size() ? blocks.get(i + 1) : null);
+        }
+        return code.toString();
+    }
+
+    private void countUses() {
+        for (Variable parameter : function.parameters) {
+            local(parameter);
+        }
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                count(instruction.operands());
+                if (instruction.result() instanceof Temp temp) {
+                    uses.putIfAbsent(temp, 0);
+                } else if (instruction.result() instanceof Variable variable) {
+                    local(variable);
+                }
+            }
+            count(block.terminator.operands());
+        }
+    }
+
+    private void count(List<Value> operands) {
+        for (Value operand : operands) {
+            if (operand instanceof Temp temp) {
+                uses.merge(temp, 1, Integer::sum);
+            } else if (operand instanceof Variable variable) {
+                local(variable);
+            }
+        }
+    }
+
+    private void local(Variable variable) {
+        maxLocals = Math.max(maxLocals, variable.declaration().slot + variable.declaration().size);
+    }
+
+    /**
+     * Starts from every temporary defined once and used once later in the same block, then gives up
+     * on those that would not be on top of the stack, in operand order, when their user runs.
+     */
+    private void stackify() {
+        Map<Temp, Integer> definitions = new HashMap<>();
+        for (BasicBlock block : function.blocks) {
+            Map<Temp, Integer> definedAt = new HashMap<>();
+            for (int i = 0; i < block.instructions.size(); i++) {
+                if (block.instructions.get(i).result() instanceof Temp temp) {
+                    definitions.merge(temp, 1, Integer::sum);
+                    definedAt.put(temp, i);
+                }
+            }
+            for (int i = 0; i <= block.instructions.size(); i++) {
+                List<Value> operands = i < block.instructions.size()
+                        ? block.instructions.get(i).operands() : block.terminator.operands();
+                for (Value operand : operands) {
+                    if (operand instanceof Temp temp && definedAt.containsKey(temp) && definedAt.get(temp) < i) {
+                        stacked.add(temp);
+                    }
+                }
+            }
+        }
+        stacked.removeIf(temp -> definitions.get(temp) != 1 || uses.get(temp) != 1);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : function.blocks) {
+                changed |= !simulate(block);
+            }
+        }
+    }
+
+    // False, after unstacking something, when a stacked operand would not be where its user expects it
+    private boolean simulate(BasicBlock block) {
+        List<Temp> pending = new ArrayList<>();
+        for (int i = 0; i <= block.instructions.size(); i++) {
+            Instruction instruction = i < block.instructions.size() ? block.instructions.get(i) : null;
+            List<Value> operands = instruction != null ? instruction.operands() : block.terminator.operands();
+            int prefix = stackedPrefix(operands);
+            for (int j = prefix; j < operands.size(); j++) {
+                if (operands.get(j) instanceof Temp temp && stacked.remove(temp)) {
+                    return false;
+                }
+            }
+            if (pending.size() < prefix || !pending.subList(pending.size() - prefix, pending.size()).equals(operands.subList(0, prefix))) {
+                for (int j = 0; j < prefix; j++) {
+                    stacked.remove((Temp) operands.get(j));
+                }
+                return false;
+            }
+            pending.subList(pending.size() - prefix, pending.size()).clear();
+            if (instruction != null && instruction.result() instanceof Temp temp && stacked.contains(temp)) {
+                pending.add(temp);
+            }
+        }
+        if (!pending.isEmpty()) {
+            stacked.removeAll(pending);
+            return false;
+        }
+        return true;
+    }
+
+    private int stackedPrefix(List<Value> operands) {
+        int prefix = 0;
+        while (prefix < operands.size() && operands.get(prefix) instanceof Temp temp && stacked.contains(temp)) {
+            prefix++;
+        }
+        return prefix;
+    }
+
+    private void emitBlock(BasicBlock block, BasicBlock next) {
+        List<Instruction> instructions = block.instructions;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (i + 1 < instructions.size() && increment(instruction, instructions.get(i + 1))) {
+                i++;
+                continue;
+            }
+            emitInstruction(instruction);
+        }
+        emitTerminator(block.terminator, next);
+    }
+
+    // v := v + c as iinc, when the sum is only used by the copy back
+    private boolean increment(Instruction instruction, Instruction next) {
+        if (!(instruction instanceof Instruction.Binary binary) || binary.result().type() != PrimitiveType.INTEGER
+                || !(binary.left() instanceof Variable variable) || !(binary.right() instanceof Constant constant)
+                || !(next instanceof Instruction.Copy copy) || !variable.equals(copy.target())
+                || !binary.result().equals(copy.source()) || uses.get(binary.result()) != 1) {
+            return false;
+        }
+        int amount = (Integer) constant.value();
+        if (binary.operator() == BinaryOperator.SUB) {
+            amount = -amount;
+        } else if (binary.operator() != BinaryOperator.ADD) {
+            return false;
+        }
+        if (amount < Short.MIN_VALUE || amount > Short.MAX_VALUE) {
+            return false;
+        }
+        code.append("iinc ").append(variable.declaration().slot).append(" ").append(amount).append("\n");
+        return true;
+    }
+
+    private void emitInstruction(Instruction instruction) {
+        load(instruction.operands());
+        switch (instruction) {
+            case Instruction.Copy copy -> {
+            }
+            case Instruction.Binary binary -> {
+                Type type = binary.result().type();
+                op(prefix(type) + binary.operator().mnemonic(), -size(type));
+            }
+            case Instruction.Compare compare -> {
+                String isTrue = "L" + nextLabel++;
+                String end = "L" + nextLabel++;
+                compareAndJump(compare.relation(), compare.left().type(), isTrue);
+                op("iconst_0", 1);
+                code.append("goto ").append(end).append("\n");
+                code.append(isTrue).append(":\n");
+                code.append("iconst_1\n");
+                code.append(end).append(":\n");
+            }
+            case Instruction.Negate negate -> op(prefix(negate.result().type()) + "neg", 0);
+            case Instruction.Not not -> {
+                op("iconst_1", 1);
+                op("ixor", -1);
+            }
+            case Instruction.Convert convert -> op("i2d", 1);
+            case Instruction.Call call -> {
+                int arguments = 0;
+                for (Value argument : call.arguments()) {
+                    arguments += size(argument.type());
+                }
+                MethodRef method = call.method();
+                op("invokestatic Main/" + method.name() + method.descriptor(),
+                        (method.returnType() == null ? 0 : size(method.returnType())) - arguments);
+            }
+            case Instruction.Stdout stdout -> op("getstatic java/lang/System/out Ljava/io/PrintStream;", 1);
+            case Instruction.Print print -> {
+                Type type = print.value().type();
+                String descriptor = type instanceof PrimitiveType ? type.descriptor() : "Ljava/lang/Object;";
+                op("invokevirtual java/io/PrintStream/println(" + descriptor + ")V", -1 - size(type));
+            }
+            case Instruction.NewRecord created -> {
+                String name = created.record().name();
+                op("new " + name, 1);
+                op("dup", 1);
+                op("invokespecial " + name + "/<init>()V", -1);
+            }
+            case Instruction.NewArray created -> {
+                pushInt(created.array().size());
+                Type element = created.array().element();
+                if (element == PrimitiveType.INTEGER) {
+                    op("newarray int", 0);
+                } else if (element == PrimitiveType.REAL) {
+                    op("newarray double", 0);
+                } else if (element == PrimitiveType.BOOLEAN) {
+                    op("newarray boolean", 0);
+                } else if (element == PrimitiveType.STRING) {
+                    op("anewarray java/lang/String", 0);
+                } else {
+                    throw new UnsupportedOperationException("Unsupported array type: " + element);
+                }
+            }
+            case Instruction.GetField get -> op("getfield " + get.record().name() + "/" + get.field() + " "
+                    + get.result().type().descriptor(), size(get.result().type()) - 1);
+            case Instruction.PutField put -> op("putfield " + put.record().name() + "/" + put.field() + " "
+                    + put.record().field(put.field()).descriptor(), -1 - size(put.value().type()));
+            case Instruction.ArrayLoad load -> op(arrayPrefix(load.result().type()) + "aload", size(load.result().type()) - 2);
+            case Instruction.ArrayStore store -> op(arrayPrefix(store.element()) + "astore", -2 - size(store.element()));
+            case Instruction.Phi phi -> throw new IllegalStateException("Phi left in " + function.name + "; leave SSA form before emitting");
+        }
+        if (instruction.result() != null) {
+            store(instruction.result());
+        }
+    }
+
+    private void emitTerminator(Terminator terminator, BasicBlock next) {
+        switch (terminator) {
+            case Terminator.Jump jump -> {
+                if (jump.target() != next) {
+                    code.append("goto ").append(labels.get(jump.target())).append("\n");
+                }
+            }
+            case Terminator.Branch branch -> {
+                load(branch.left());
+                boolean againstZero = isZero(branch.right()) && isIntLike(branch.left().type());
+                if (!againstZero) {
+                    load(branch.right());
+                }
+                Relation relation = branch.relation();
+                BasicBlock target = branch.ifTrue();
+                if (target == next) {
+                    relation = relation.negate();
+                    target = branch.ifFalse();
+                }
+                if (againstZero) {
+                    op("if" + relation.suffix() + " " + labels.get(target), -1);
+                } else {
+                    compareAndJump(relation, branch.left().type(), labels.get(target));
+                }
+                BasicBlock otherwise = target == branch.ifTrue() ? branch.ifFalse() : branch.ifTrue();
+                if (otherwise != next) {
+                    code.append("goto ").append(labels.get(otherwise)).append("\n");
+                }
+            }
+            case Terminator.Return ret -> {
+                if (ret.value() == null) {
+                    code.append("return\n");
+                } else {
+                    load(ret.value());
+                    Type type = function.returnType;
+                    code.append(isIntLike(type) ? "i" : type == PrimitiveType.REAL ? "d" : "a").append("return\n");
+                    stack -= size(type);
+                }
+            }
+        }
+    }
+
+    // Pops both operands and jumps when `left relation right` holds
+    private void compareAndJump(Relation relation, Type type, String label) {
+        if (type == PrimitiveType.REAL) {
+            op("dcmpg", -3);
+            op("if" + relation.suffix() + " " + label, -1);
+        } else if (isIntLike(type)) {
+            op("if_icmp" + relation.suffix() + " " + label, -2);
+        } else if (relation == Relation.EQ || relation == Relation.NE) {
+            op("if_acmp" + relation.suffix() + " " + label, -2);
+        } else {
+            throw new UnsupportedOperationException("Cannot order values of type " + type);
+        }
+    }
+
+    /**
+     * Pushes the operands the stack does not already hold.
+     */
+    private void load(List<Value> operands) {
+        for (int i = stackedPrefix(operands); i < operands.size(); i++) {
+            load(operands.get(i));
+        }
+    }
+
+    private void load(Value value) {
+        switch (value) {
+            case Constant constant -> loadConstant(constant);
+            case Variable variable -> op(prefix(variable.type()) + "load" + slotSuffix(variable.declaration().slot), size(variable.type()));
+            case Temp temp -> {
+                if (!stacked.contains(temp)) {
+                    op(prefix(temp.type()) + "load" + slotSuffix(tempSlots.get(temp)), size(temp.type()));
+                }
+            }
+        }
+    }
+
+    private void loadConstant(Constant constant) {
+        switch (constant.value()) {
+            case Integer integer -> pushInt(integer);
+            case Boolean bool -> op(bool ? "iconst_1" : "iconst_0", 1);
+            case Double real -> {
+                if (Double.doubleToRawLongBits(real) == 0L) {
+                    op("dconst_0", 2);
+                } else if (real == 1.0) {
+                    op("dconst_1", 2);
+                } else if (real.floatValue() == real) {
+                    op("ldc2_w " + real, 2);
+                } else {
+                    // Jasmin reads a real operand at float precision, so the exact value goes in as its bits
+                    op("ldc2_w " + Double.doubleToRawLongBits(real), 2);
+                    op("invokestatic java/lang/Double/longBitsToDouble(J)D", 0);
+                }
+            }
+            case String string -> op("ldc " + string, 1);
+            case null -> op("aconst_null", 1);
+            default -> throw new UnsupportedOperationException("Unsupported literal type: " + constant.value().getClass().getSimpleName());
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(value == -1 ? "iconst_m1" : "iconst_" + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op("bipush " + value, 1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op("sipush " + value, 1);
+        } else {
+            op("ldc " + value, 1);
+        }
+    }
+
+    private void store(Value result) {
+        switch (result) {
+            case Variable variable -> op(prefix(variable.type()) + "store" + slotSuffix(variable.declaration().slot), -size(variable.type()));
+            case Temp temp -> {
+                if (stacked.contains(temp)) {
+                    return;
+                }
+                Integer slot = tempSlots.get(temp);
+                if (slot == null) {
+                    op(size(temp.type()) == 2 ? "pop2" : "pop", -size(temp.type()));
+                } else {
+                    op(prefix(temp.type()) + "store" + slotSuffix(slot), -size(temp.type()));
+                }
+            }
+            case Constant constant -> throw new IllegalStateException("Cannot store into a constant");
+        }
+    }
+
+    private void op(String instruction, int stackEffect) {
+        code.append(instruction).append("\n");
+        stack += stackEffect;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private static String slotSuffix(int slot) {
+        return slot <= 3 ? "_" + slot : " " + slot;
+    }
+
+    private static boolean isZero(Value value) {
+        return value instanceof Constant constant
+                && (Integer.valueOf(0).equals(constant.value()) || Boolean.FALSE.equals(constant.value()));
+    }
+
+    private static boolean isIntLike(Type type) {
+        return type == PrimitiveType.INTEGER || type == PrimitiveType.BOOLEAN;
+    }
+
+    private static String prefix(Type type) {
+        if (isIntLike(type)) {
+            return "i";
+        }
+        return type == PrimitiveType.REAL ? "d" : "a";
+    }
+
+    private static String arrayPrefix(Type element) {
+        if (element == PrimitiveType.BOOLEAN) {
+            return "b";
+        }
+        return prefix(element);
+    }
+
+    private static int size(Type type) {
+        return type == PrimitiveType.REAL ? 2 : 1;
+    }
+}
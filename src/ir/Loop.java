@@ -0,0 +1,75 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * A natural loop: a header and every block that reaches one of the header's back edges without passing
+ * through the header. Back edges into the same header make one loop.
+ */
+public record Loop(BasicBlock header, Set<BasicBlock> blocks) {
+    /**
+     * The loops of {@code function}, innermost first.
+     */
+    public static List<Loop> find(IrFunction function, Dominators dominators) {
+        Map<BasicBlock, Loop> loops = new LinkedHashMap<>();
+        for (BasicBlock block : dominators.reversePostorder()) {
+            for (BasicBlock successor : block.successors()) {
+                if (!dominators.dominates(successor, block)) {
+                    continue;
+                }
+                Loop loop = loops.computeIfAbsent(successor, header -> new Loop(header, new LinkedHashSet<>(List.of(header))));
+                Deque<BasicBlock> work = new ArrayDeque<>();
+                if (loop.blocks.add(block)) {
+                    work.push(block);
+                }
+                while (!work.isEmpty()) {
+                    for (BasicBlock predecessor : dominators.predecessors(work.pop())) {
+                        if (dominators.dominates(successor, predecessor) && loop.blocks.add(predecessor)) {
+                            work.push(predecessor);
+                        }
+                    }
+                }
+            }
+        }
+        List<Loop> ordered = new ArrayList<>(loops.values());
+        ordered.sort(Comparator.comparingInt(loop -> loop.blocks.size()));
+        return ordered;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    /**
+     * The block that runs once before the loop is entered, made if needed: control from outside the loop
+     * is routed through a new block right before the header unless it already comes from one block that
+     * only jumps here. Loops around the header take the new block in. Null when the header is the
+     * function's entry, which nothing may jump to.
+     */
+    public BasicBlock preheader(IrFunction function, List<Loop> enclosing) {
+        if (header == function.entry()) {
+            return null;
+        }
+        List<BasicBlock> outside = new ArrayList<>();
+        for (BasicBlock predecessor : function.predecessors().get(header)) {
+            if (!blocks.contains(predecessor)) {
+                outside.add(predecessor);
+            }
+        }
+        if (outside.size() == 1 && outside.getFirst().terminator instanceof Terminator.Jump) {
+            return outside.getFirst();
+        }
+        BasicBlock preheader = function.newBlock();
+        preheader.terminator = new Terminator.Jump(header);
+        for (BasicBlock predecessor : outside) {
+            predecessor.terminator = predecessor.terminator.withTargets(target -> target == header ? preheader : target);
+        }
+        function.blocks.add(function.blocks.indexOf(header), preheader);
+        for (Loop loop : enclosing) {
+            if (loop != this && loop.contains(header)) {
+                loop.blocks.add(preheader);
+            }
+        }
+        return preheader;
+    }
+}
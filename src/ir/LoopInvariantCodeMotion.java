@@ -0,0 +1,275 @@
+package ir;
+
+import types.ArrayType;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Moves computations whose value cannot change while a loop runs into the loop's preheader, so they
+ * run once per entry instead of once per iteration: arithmetic and comparisons on invariant operands,
+ * and loads of record fields and array elements nothing in the loop stores to.
+ * <p>
+ * Stores are told apart by type: a field store only clobbers that field of that record type, an array
+ * store only arrays of its element type, and a call everything unless {@link SideEffects} knows the
+ * routine stores nothing. Hoisted code runs even when the loop body would not, so an instruction that
+ * may throw, a division by a variable or a load through a reference that may be null or an index
+ * that may be out of bounds, moves freely only from the header, which runs on every entry anyway.
+ * From a body block that runs on every iteration before anything with an effect, it moves behind a
+ * copy of the header's test, so it still only runs when the first iteration would.
+ */
+public final class LoopInvariantCodeMotion {
+    private final IrFunction function;
+    private final SideEffects effects;
+    private final Dominators dominators;
+    private final Map<Temp, Instruction> definitions = new HashMap<>();
+    private final Map<Variable, List<Value>> assignments = new HashMap<>();
+
+    private LoopInvariantCodeMotion(IrFunction function, SideEffects effects, Dominators dominators) {
+        this.function = function;
+        this.effects = effects;
+        this.dominators = dominators;
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() instanceof Temp temp) {
+                    definitions.put(temp, instruction);
+                } else if (instruction instanceof Instruction.Copy copy && copy.target() instanceof Variable variable) {
+                    assignments.computeIfAbsent(variable, key -> new ArrayList<>()).add(copy.source());
+                }
+            }
+        }
+    }
+
+    public static void run(IrFunction function, SideEffects effects) {
+        Dominators dominators = new Dominators(function);
+        List<Loop> loops = Loop.find(function, dominators);
+        if (loops.isEmpty()) {
+            return;
+        }
+        // Blocks added for earlier loops are unknown to the dominators, so no guard is built from them
+        LoopInvariantCodeMotion motion = new LoopInvariantCodeMotion(function, effects, dominators);
+        for (Loop loop : loops) {
+            motion.hoist(loop, loops);
+        }
+    }
+
+    private void hoist(Loop loop, List<Loop> loops) {
+        Set<Variable> assigned = new HashSet<>();
+        Set<Temp> defined = new HashSet<>();
+        Set<String> storedFields = new HashSet<>();
+        Set<String> storedElements = new HashSet<>();
+        boolean storesAnything = false;
+        for (BasicBlock block : loop.blocks()) {
+            for (Instruction instruction : block.instructions) {
+                switch (instruction) {
+                    case Instruction.PutField put -> storedFields.add(put.record().name() + "." + put.field());
+                    case Instruction.ArrayStore store -> storedElements.add(store.element().descriptor());
+                    case Instruction.Call call -> storesAnything |= effects.storesMemory(call.method());
+                    default -> {
+                    }
+                }
+                if (instruction.result() instanceof Variable variable) {
+                    assigned.add(variable);
+                } else if (instruction.result() instanceof Temp temp) {
+                    defined.add(temp);
+                }
+            }
+        }
+
+        Set<BasicBlock> guardable = guardable(loop);
+        Set<Temp> hoisted = new HashSet<>();
+        Set<Temp> guarded = new HashSet<>();
+        List<Instruction> moved = new ArrayList<>();
+        List<Instruction> movedBehindGuard = new ArrayList<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : function.blocks) {
+                if (!loop.contains(block)) {
+                    continue;
+                }
+                // Whether everything before the current instruction in the header is free of effects, and
+                // the same for everything since the header when the block runs on every iteration
+                boolean quiet = block == loop.header();
+                boolean quietBody = guardable.contains(block);
+                Iterator<Instruction> instructions = block.instructions.iterator();
+                while (instructions.hasNext()) {
+                    Instruction instruction = instructions.next();
+                    boolean invariant = instruction.result() instanceof Temp
+                            && instruction.operands().stream().allMatch(operand -> switch (operand) {
+                                case Constant constant -> true;
+                                case Variable variable -> !assigned.contains(variable);
+                                case Temp temp -> !defined.contains(temp) || hoisted.contains(temp);
+                            });
+                    // Null when the instruction cannot move, otherwise whether it is safe without a guard
+                    Boolean safe = !invariant ? null : switch (instruction) {
+                        case Instruction.Binary binary -> quiet || !binary.mayThrow();
+                        case Instruction.Compare compare -> true;
+                        case Instruction.Negate negate -> true;
+                        case Instruction.Not not -> true;
+                        case Instruction.Convert convert -> true;
+                        case Instruction.GetField load -> storesAnything
+                                || storedFields.contains(load.record().name() + "." + load.field()) ? null
+                                : quiet || nonNull(load.object(), new HashSet<>());
+                        case Instruction.ArrayLoad load -> storesAnything
+                                || storedElements.contains(load.result().type().descriptor()) ? null
+                                : quiet || inBounds(load);
+                        default -> null;
+                    };
+                    if (safe != null && (safe || quietBody)) {
+                        instructions.remove();
+                        Temp result = (Temp) instruction.result();
+                        if (!safe || instruction.operands().stream().anyMatch(guarded::contains)) {
+                            movedBehindGuard.add(instruction);
+                            guarded.add(result);
+                        } else {
+                            moved.add(instruction);
+                        }
+                        hoisted.add(result);
+                        changed = true;
+                    } else if (!pure(instruction)) {
+                        quiet = false;
+                        quietBody = false;
+                    }
+                }
+            }
+        }
+        if (!moved.isEmpty()) {
+            BasicBlock preheader = loop.preheader(function, loops);
+            if (preheader == null) {
+                throw new IllegalStateException("Loop at the entry of " + function.name);
+            }
+            preheader.instructions.addAll(moved);
+        }
+        if (!movedBehindGuard.isEmpty()) {
+            guard(loop, loops).instructions.addAll(movedBehindGuard);
+        }
+    }
+
+    /**
+     * The body blocks an instruction may move from behind a guard: blocks that run on every iteration
+     * that does not leave at the header, after nothing but pure code. Empty unless the header only
+     * computes its test.
+     */
+    private Set<BasicBlock> guardable(Loop loop) {
+        BasicBlock header = loop.header();
+        if (header == function.entry() || !(header.terminator instanceof Terminator.Branch branch)
+                || loop.contains(branch.ifTrue()) == loop.contains(branch.ifFalse())
+                || !header.instructions.stream().allMatch(LoopInvariantCodeMotion::copyable)) {
+            return Set.of();
+        }
+        // Every way around the loop, and every way out of it past the header, must pass the block
+        List<BasicBlock> mustPass = new ArrayList<>();
+        for (BasicBlock block : loop.blocks()) {
+            for (BasicBlock successor : block.successors()) {
+                if (successor == header || (block != header && !loop.contains(successor))) {
+                    mustPass.add(block);
+                }
+            }
+        }
+        Map<BasicBlock, List<BasicBlock>> predecessors = function.predecessors();
+        Set<BasicBlock> guardable = new HashSet<>();
+        for (BasicBlock block : loop.blocks()) {
+            if (block != header && mustPass.stream().allMatch(each -> dominators.dominates(block, each))
+                    && quietBefore(loop, block, predecessors)) {
+                guardable.add(block);
+            }
+        }
+        return guardable;
+    }
+
+    // Whether every block inside the loop that can lead to block without passing the header is pure
+    private boolean quietBefore(Loop loop, BasicBlock block, Map<BasicBlock, List<BasicBlock>> predecessors) {
+        Set<BasicBlock> seen = new HashSet<>(List.of(loop.header(), block));
+        Deque<BasicBlock> work = new ArrayDeque<>(List.of(block));
+        while (!work.isEmpty()) {
+            for (BasicBlock predecessor : predecessors.get(work.pop())) {
+                if (loop.contains(predecessor) && seen.add(predecessor)) {
+                    if (!predecessor.instructions.stream().allMatch(LoopInvariantCodeMotion::pure)) {
+                        return false;
+                    }
+                    work.push(predecessor);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A block that runs after the preheader only when the loop's first test sends control into the body:
+     * the header's instructions are copied in front of it, and its branch goes past the loop otherwise.
+     */
+    private BasicBlock guard(Loop loop, List<Loop> loops) {
+        BasicBlock header = loop.header();
+        BasicBlock preheader = loop.preheader(function, loops);
+        BasicBlock test = function.newBlock();
+        BasicBlock guarded = function.newBlock();
+        Map<Value, Value> copies = new HashMap<>();
+        UnaryOperator<Value> copyOf = value -> copies.getOrDefault(value, value);
+        for (Instruction instruction : header.instructions) {
+            Temp result = function.newTemp(instruction.result().type());
+            copies.put(instruction.result(), result);
+            test.instructions.add(switch (instruction.withOperands(copyOf)) {
+                case Instruction.Binary binary -> new Instruction.Binary(result, binary.operator(), binary.left(), binary.right());
+                case Instruction.Compare compare -> new Instruction.Compare(result, compare.relation(), compare.left(), compare.right());
+                case Instruction.Negate negate -> new Instruction.Negate(result, negate.operand());
+                case Instruction.Not not -> new Instruction.Not(result, not.operand());
+                case Instruction.Convert convert -> new Instruction.Convert(result, convert.source());
+                default -> throw new IllegalStateException("Cannot copy " + instruction);
+            });
+        }
+        test.terminator = header.terminator.withOperands(copyOf)
+                .withTargets(target -> loop.contains(target) ? guarded : target);
+        guarded.terminator = new Terminator.Jump(header);
+        preheader.terminator = new Terminator.Jump(test);
+        function.blocks.addAll(function.blocks.indexOf(header), List.of(test, guarded));
+        for (Loop enclosing : loops) {
+            if (enclosing != loop && enclosing.contains(header)) {
+                enclosing.blocks().add(test);
+                enclosing.blocks().add(guarded);
+            }
+        }
+        return guarded;
+    }
+
+    private static boolean copyable(Instruction instruction) {
+        return switch (instruction) {
+            case Instruction.Binary binary -> !binary.mayThrow();
+            case Instruction.Compare compare -> true;
+            case Instruction.Negate negate -> true;
+            case Instruction.Not not -> true;
+            case Instruction.Convert convert -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean pure(Instruction instruction) {
+        return !(instruction instanceof Instruction.Call || instruction instanceof Instruction.Print
+                || instruction instanceof Instruction.PutField || instruction instanceof Instruction.ArrayStore);
+    }
+
+    // Records and arrays are created non-null; only a parameter or a null constant can bring one in
+    private boolean nonNull(Value value, Set<Variable> visiting) {
+        return switch (value) {
+            case Constant constant -> constant.value() != null;
+            case Temp temp -> definitions.get(temp) instanceof Instruction.NewRecord
+                    || definitions.get(temp) instanceof Instruction.NewArray;
+            case Variable variable -> {
+                if (!visiting.add(variable)) {
+                    yield true;
+                }
+                if (function.parameters.contains(variable) || !assignments.containsKey(variable)) {
+                    yield false;
+                }
+                yield assignments.get(variable).stream().allMatch(source -> nonNull(source, visiting));
+            }
+        };
+    }
+
+    // An array's size is part of its type, so a constant index can be checked here
+    private boolean inBounds(Instruction.ArrayLoad load) {
+        return load.array().type() instanceof ArrayType array && nonNull(load.array(), new HashSet<>())
+                && load.index() instanceof Constant constant && constant.value() instanceof Integer index
+                && index >= 0 && index < array.size();
+    }
+}
@@ -0,0 +1,19 @@
+package ir;
+
+import types.Type;
+
+import java.util.List;
+
+/**
+ * A routine as seen by its callers: a static method of Main. {@code returnType} is null for a procedure.
+ */
+public record MethodRef(String name, List<Type> parameters, Type returnType) {
+    public String descriptor() {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Type parameter : parameters) {
+            descriptor.append(parameter.descriptor());
+        }
+        descriptor.append(")").append(returnType == null ? "V" : returnType.descriptor());
+        return descriptor.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package ir;
+
+import tokens.TokenType;
+
+/**
+ * Comparison of two operands, named after the suffix of the JVM branch that tests it.
+ */
+public enum Relation {
+    EQ, NE, LT, LE, GT, GE;
+
+    public static Relation of(TokenType operator) {
+        return switch (operator) {
+            case EQUAL -> EQ;
+            case NOT_EQUAL -> NE;
+            case LESS -> LT;
+            case LESS_EQUAL -> LE;
+            case GREATER -> GT;
+            case GREATER_EQUAL -> GE;
+            default -> null;
+        };
+    }
+
+    public Relation negate() {
+        return switch (this) {
+            case EQ -> NE;
+            case NE -> EQ;
+            case LT -> GE;
+            case LE -> GT;
+            case GT -> LE;
+            case GE -> LT;
+        };
+    }
+
+    public String suffix() {
+        return name().toLowerCase();
+    }
+}
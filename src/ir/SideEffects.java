@@ -0,0 +1,61 @@
+package ir;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Which routines may store into a record field or an array element, directly or through the routines
+ * they call. A routine cannot touch another frame's variables, so that is everything a call could
+ * change that a loop or an expression in the caller might read. Routines without a known body, and
+ * routines that call themselves, count as storing.
+ */
+public final class SideEffects {
+    private final Function<MethodRef, IrFunction> bodies;
+    private final Map<MethodRef, Boolean> stores = new ConcurrentHashMap<>();
+
+    /**
+     * {@code bodies} gives the lowered body of a routine, or null when it is not known.
+     */
+    public SideEffects(Function<MethodRef, IrFunction> bodies) {
+        this.bodies = bodies;
+    }
+
+    public boolean storesMemory(MethodRef method) {
+        return storesMemory(method, new HashSet<>());
+    }
+
+    private boolean storesMemory(MethodRef method, Set<MethodRef> visiting) {
+        Boolean known = stores.get(method);
+        if (known != null) {
+            return known;
+        }
+        if (!visiting.add(method)) {
+            return true;
+        }
+        boolean result = computeStores(method, visiting);
+        visiting.remove(method);
+        stores.put(method, result);
+        return result;
+    }
+
+    private boolean computeStores(MethodRef method, Set<MethodRef> visiting) {
+        IrFunction body = bodies.apply(method);
+        if (body == null) {
+            return true;
+        }
+        for (BasicBlock block : body.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Instruction.PutField || instruction instanceof Instruction.ArrayStore) {
+                    return true;
+                }
+                if (instruction instanceof Instruction.Call call && storesMemory(call.method(), visiting)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Puts a function into SSA form: every write of a {@link Variable} defines a fresh {@link Temp}, a
+ * version of the variable, and phis merge versions where control joins. A read reached by no write
+ * keeps the variable itself, whose slot still holds the parameter or initial value.
+ * <p>
+ * {@link #destruct} turns every version back into its variable and drops the phis. That is only valid
+ * while versions of one variable are never live at the same time, which holds for passes that replace
+ * uses with constants or with ordinary temporaries, or delete unused definitions, but not for passes
+ * that move or merge versions.
+ */
+public final class SsaForm {
+    private final IrFunction function;
+    private final Map<Temp, Variable> versions = new HashMap<>();
+    private final Map<Variable, Deque<Value>> current = new HashMap<>();
+    private final Dominators dominators;
+
+    private SsaForm(IrFunction function) {
+        this.function = function;
+        this.dominators = new Dominators(function);
+    }
+
+    public static SsaForm construct(IrFunction function) {
+        SsaForm ssa = new SsaForm(function);
+        ssa.placePhis();
+        ssa.rename(function.entry());
+        return ssa;
+    }
+
+    public Dominators dominators() {
+        return dominators;
+    }
+
+    /**
+     * The variable {@code temp} is a version of, or null for an ordinary temporary.
+     */
+    public Variable variableOf(Temp temp) {
+        return versions.get(temp);
+    }
+
+    public void destruct() {
+        for (BasicBlock block : function.blocks) {
+            List<Instruction> instructions = new ArrayList<>();
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Instruction.Phi) {
+                    continue;
+                }
+                instruction = instruction.withOperands(this::original);
+                if (instruction instanceof Instruction.Copy copy) {
+                    Value target = original(copy.target());
+                    if (target.equals(copy.source())) {
+                        continue;
+                    }
+                    instruction = new Instruction.Copy(target, copy.source());
+                }
+                instructions.add(instruction);
+            }
+            block.instructions.clear();
+            block.instructions.addAll(instructions);
+            block.terminator = block.terminator.withOperands(this::original);
+        }
+    }
+
+    private Value original(Value value) {
+        return value instanceof Temp temp && versions.containsKey(temp) ? versions.get(temp) : value;
+    }
+
+    // Phis go at the iterated dominance frontier of each variable's writes
+    private void placePhis() {
+        Map<Variable, Set<BasicBlock>> writes = new LinkedHashMap<>();
+        for (BasicBlock block : dominators.reversePostorder()) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() instanceof Variable variable) {
+                    writes.computeIfAbsent(variable, key -> new LinkedHashSet<>()).add(block);
+                }
+            }
+        }
+        for (Map.Entry<Variable, Set<BasicBlock>> entry : writes.entrySet()) {
+            Variable variable = entry.getKey();
+            Set<BasicBlock> placed = new HashSet<>();
+            Deque<BasicBlock> work = new ArrayDeque<>(entry.getValue());
+            while (!work.isEmpty()) {
+                for (BasicBlock join : dominators.frontier(work.pop())) {
+                    if (placed.add(join)) {
+                        Temp version = newVersion(variable);
+                        join.instructions.add(0, new Instruction.Phi(version, new LinkedHashMap<>()));
+                        work.push(join);
+                    }
+                }
+            }
+        }
+    }
+
+    private void rename(BasicBlock entry) {
+        // Explicit stack of (block, pushed versions) pairs: enter a block, then pop its versions on exit
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{entry, null});
+        while (!stack.isEmpty()) {
+            Object[] frame = stack.pop();
+            BasicBlock block = (BasicBlock) frame[0];
+            if (frame[1] != null) {
+                @SuppressWarnings("unchecked")
+                List<Variable> pushed = (List<Variable>) frame[1];
+                for (Variable variable : pushed) {
+                    current.get(variable).pop();
+                }
+                continue;
+            }
+            List<Variable> pushed = new ArrayList<>();
+            List<Instruction> instructions = block.instructions;
+            for (int i = 0; i < instructions.size(); i++) {
+                Instruction instruction = instructions.get(i);
+                if (instruction instanceof Instruction.Phi phi) {
+                    define(versions.get(phi.result()), phi.result(), pushed);
+                    continue;
+                }
+                instruction = instruction.withOperands(this::currentVersion);
+                if (instruction instanceof Instruction.Copy copy && copy.target() instanceof Variable variable) {
+                    Temp version = newVersion(variable);
+                    define(variable, version, pushed);
+                    instruction = new Instruction.Copy(version, copy.source());
+                }
+                instructions.set(i, instruction);
+            }
+            block.terminator = block.terminator.withOperands(this::currentVersion);
+            for (BasicBlock successor : block.successors()) {
+                for (Instruction instruction : successor.instructions) {
+                    if (!(instruction instanceof Instruction.Phi phi)) {
+                        break;
+                    }
+                    phi.incoming().put(block, currentVersion(versions.get(phi.result())));
+                }
+            }
+            stack.push(new Object[]{block, pushed});
+            List<BasicBlock> children = dominators.children(block);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new Object[]{children.get(i), null});
+            }
+        }
+    }
+
+    private Temp newVersion(Variable variable) {
+        Temp version = function.newTemp(variable.type());
+        versions.put(version, variable);
+        return version;
+    }
+
+    private void define(Variable variable, Temp version, List<Variable> pushed) {
+        current.computeIfAbsent(variable, key -> new ArrayDeque<>()).push(version);
+        pushed.add(variable);
+    }
+
+    private Value currentVersion(Value value) {
+        if (value instanceof Variable variable) {
+            Deque<Value> stack = current.get(variable);
+            return stack == null || stack.isEmpty() ? variable : stack.peek();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,480 @@
+package ir;
+
+import types.PrimitiveType;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Induction variable strength reduction, then cheaper forms of multiplication, division and remainder
+ * by powers of two.
+ * <p>
+ * A basic induction variable is an integer variable a loop only changes by adding constants to it,
+ * like a for loop's counter. A derived one is the basic variable times a loop-invariant scale plus an
+ * optional invariant offset, like the {@code i * stride + k} of an array index. Each derived value that
+ * is read by anything but another derived value gets a variable of its own, set in the preheader and
+ * advanced by {@code step * scale} right after every update of the basic variable, so the
+ * multiplication leaves the loop. Derived values nothing reads any more are deleted. Integer arithmetic
+ * wraps, so the sums agree with the products even on overflow.
+ * <p>
+ * For the same reason a multiplication by 2^k is always a left shift. Division and remainder by 2^k
+ * only become an arithmetic shift and a mask when the dividend cannot be negative, which is tracked as
+ * a range: constants, arithmetic on ranges that cannot overflow, and counters of loops whose test
+ * bounds them.
+ */
+public final class StrengthReduction {
+    private record Family(Variable basis, Value scale, Value offset) {
+    }
+
+    private record Range(long low, long high) {
+        static final Range ANY = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        static Range of(long low, long high) {
+            return low < Integer.MIN_VALUE || high > Integer.MAX_VALUE ? ANY : new Range(low, high);
+        }
+    }
+
+    private final IrFunction function;
+    private final List<Loop> loops;
+    private final Map<Temp, Instruction> definitions = new HashMap<>();
+    private final Map<Temp, BasicBlock> definedIn = new HashMap<>();
+    private final Map<Loop, Map<Variable, Map<Instruction, Integer>>> basicVariables = new HashMap<>();
+    private final Map<Temp, Range> ranges = new HashMap<>();
+
+    private StrengthReduction(IrFunction function, List<Loop> loops) {
+        this.function = function;
+        this.loops = loops;
+    }
+
+    public static void run(IrFunction function) {
+        StrengthReduction reduction = new StrengthReduction(function, Loop.find(function, new Dominators(function)));
+        for (Loop loop : reduction.loops) {
+            reduction.reduceInductions(loop);
+        }
+        reduction.basicVariables.clear();
+        reduction.findDefinitions();
+        reduction.reducePowersOfTwo();
+    }
+
+    private void findDefinitions() {
+        definitions.clear();
+        definedIn.clear();
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() instanceof Temp temp) {
+                    definitions.put(temp, instruction);
+                    definedIn.put(temp, block);
+                }
+            }
+        }
+    }
+
+    // Every update of each basic induction variable of the loop, with the constant it adds
+    private Map<Variable, Map<Instruction, Integer>> basicVariables(Loop loop) {
+        Map<Variable, Map<Instruction, Integer>> found = basicVariables.get(loop);
+        if (found != null) {
+            return found;
+        }
+        found = new HashMap<>();
+        Set<Variable> rejected = new HashSet<>();
+        for (BasicBlock block : loop.blocks()) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() instanceof Variable variable) {
+                    Integer step = step(instruction, variable, loop);
+                    if (step == null || variable.type() != PrimitiveType.INTEGER) {
+                        rejected.add(variable);
+                    } else {
+                        found.computeIfAbsent(variable, key -> new HashMap<>()).put(instruction, step);
+                    }
+                }
+            }
+        }
+        found.keySet().removeAll(rejected);
+        basicVariables.put(loop, found);
+        return found;
+    }
+
+    // The c of `v := v + c` or `v := v - c`, or null for any other assignment
+    private Integer step(Instruction instruction, Variable variable, Loop loop) {
+        if (!(instruction instanceof Instruction.Copy copy) || !(copy.source() instanceof Temp sum)
+                || !loop.contains(definedIn.get(sum)) || !(definitions.get(sum) instanceof Instruction.Binary binary)) {
+            return null;
+        }
+        if (binary.operator() == BinaryOperator.ADD && variable.equals(binary.left()) && intConstant(binary.right()) != null) {
+            return intConstant(binary.right());
+        }
+        if (binary.operator() == BinaryOperator.ADD && variable.equals(binary.right()) && intConstant(binary.left()) != null) {
+            return intConstant(binary.left());
+        }
+        if (binary.operator() == BinaryOperator.SUB && variable.equals(binary.left()) && intConstant(binary.right()) != null) {
+            return -intConstant(binary.right());
+        }
+        return null;
+    }
+
+    private static Integer intConstant(Value value) {
+        return value instanceof Constant constant && constant.value() instanceof Integer integer ? integer : null;
+    }
+
+    private void reduceInductions(Loop loop) {
+        findDefinitions();
+        Map<Variable, Map<Instruction, Integer>> basics = basicVariables(loop);
+        if (basics.isEmpty()) {
+            return;
+        }
+        Set<Variable> assigned = new HashSet<>();
+        for (BasicBlock block : loop.blocks()) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() instanceof Variable variable) {
+                    assigned.add(variable);
+                }
+            }
+        }
+
+        Map<Temp, Family> derived = new LinkedHashMap<>();
+        for (BasicBlock block : function.blocks) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Instruction.Binary binary && binary.result().type() == PrimitiveType.INTEGER) {
+                    Family family = family(binary, basics, derived, value -> switch (value) {
+                        case Constant constant -> true;
+                        case Variable variable -> !assigned.contains(variable);
+                        case Temp temp -> !loop.contains(definedIn.get(temp));
+                    });
+                    if (family != null) {
+                        derived.put(binary.result(), family);
+                    }
+                }
+            }
+        }
+
+        // A derived value only read by other derived values is not worth a variable of its own
+        Map<Value, Integer> uses = countUses();
+        Map<Temp, Integer> derivedUses = new HashMap<>();
+        for (Temp temp : derived.keySet()) {
+            for (Value operand : definitions.get(temp).operands()) {
+                if (operand instanceof Temp used && derived.containsKey(used)) {
+                    derivedUses.merge(used, 1, Integer::sum);
+                }
+            }
+        }
+        Set<Temp> kept = new LinkedHashSet<>();
+        for (Temp temp : derived.keySet()) {
+            if (uses.getOrDefault(temp, 0) > derivedUses.getOrDefault(temp, 0)) {
+                kept.add(temp);
+            }
+        }
+        if (kept.isEmpty()) {
+            return;
+        }
+        BasicBlock preheader = loop.preheader(function, loops);
+        if (preheader == null) {
+            return;
+        }
+
+        Map<Family, Variable> variables = new LinkedHashMap<>();
+        for (Temp temp : kept) {
+            Family family = derived.get(temp);
+            variables.computeIfAbsent(family, key -> initialize(key, preheader));
+        }
+        Map<List<Object>, Value> steps = new HashMap<>();
+        for (BasicBlock block : loop.blocks()) {
+            List<Instruction> rewritten = new ArrayList<>();
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() instanceof Temp temp && kept.contains(temp)) {
+                    rewritten.add(new Instruction.Copy(temp, variables.get(derived.get(temp))));
+                    continue;
+                }
+                rewritten.add(instruction);
+                if (instruction.result() instanceof Variable basis && basics.containsKey(basis)) {
+                    int step = basics.get(basis).get(instruction);
+                    for (Map.Entry<Family, Variable> entry : variables.entrySet()) {
+                        if (entry.getKey().basis().equals(basis)) {
+                            Value amount = steps.computeIfAbsent(List.of(entry.getKey(), step),
+                                    key -> stepOf(entry.getKey(), step, preheader));
+                            Variable variable = entry.getValue();
+                            Temp next = function.newTemp(PrimitiveType.INTEGER);
+                            rewritten.add(new Instruction.Binary(next, BinaryOperator.ADD, variable, amount));
+                            rewritten.add(new Instruction.Copy(variable, next));
+                        }
+                    }
+                }
+            }
+            block.instructions.clear();
+            block.instructions.addAll(rewritten);
+        }
+        removeUnused(derived.keySet());
+    }
+
+    private Family family(Instruction.Binary binary, Map<Variable, Map<Instruction, Integer>> basics,
+                          Map<Temp, Family> derived, Predicate<Value> invariant) {
+        Value left = binary.left();
+        Value right = binary.right();
+        switch (binary.operator()) {
+            case MUL -> {
+                for (int side = 0; side < 2; side++) {
+                    Value factor = side == 0 ? left : right;
+                    Value other = side == 0 ? right : left;
+                    if (factor instanceof Variable basis && basics.containsKey(basis) && invariant.test(other)) {
+                        return new Family(basis, other, null);
+                    }
+                    Family inner = factor instanceof Temp temp ? derived.get(temp) : null;
+                    Integer scale = inner == null ? null : intConstant(inner.scale());
+                    Integer times = intConstant(other);
+                    if (scale != null && times != null && (inner.offset() == null || intConstant(inner.offset()) != null)) {
+                        Value offset = inner.offset() == null ? null : Constant.of(intConstant(inner.offset()) * times);
+                        return new Family(inner.basis(), Constant.of(scale * times), offset);
+                    }
+                }
+            }
+            case ADD -> {
+                for (int side = 0; side < 2; side++) {
+                    Value term = side == 0 ? left : right;
+                    Value other = side == 0 ? right : left;
+                    if (term instanceof Temp temp && derived.containsKey(temp) && invariant.test(other)) {
+                        return withOffset(derived.get(temp), other);
+                    }
+                }
+            }
+            case SUB -> {
+                if (left instanceof Temp temp && derived.containsKey(temp) && intConstant(right) != null) {
+                    return withOffset(derived.get(temp), Constant.of(-intConstant(right)));
+                }
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    private static Family withOffset(Family family, Value offset) {
+        if (family.offset() == null) {
+            return new Family(family.basis(), family.scale(), offset);
+        }
+        if (intConstant(family.offset()) != null && intConstant(offset) != null) {
+            return new Family(family.basis(), family.scale(), Constant.of(intConstant(family.offset()) + intConstant(offset)));
+        }
+        return null;
+    }
+
+    // basis * scale + offset, computed once before the loop
+    private Variable initialize(Family family, BasicBlock preheader) {
+        Temp product = function.newTemp(PrimitiveType.INTEGER);
+        preheader.instructions.add(new Instruction.Binary(product, BinaryOperator.MUL, family.basis(), family.scale()));
+        Value value = product;
+        if (family.offset() != null) {
+            Temp sum = function.newTemp(PrimitiveType.INTEGER);
+            preheader.instructions.add(new Instruction.Binary(sum, BinaryOperator.ADD, product, family.offset()));
+            value = sum;
+        }
+        Variable variable = function.newVariable(family.basis().declaration().symbol, PrimitiveType.INTEGER);
+        preheader.instructions.add(new Instruction.Copy(variable, value));
+        return variable;
+    }
+
+    // What the derived variable advances by when its basis advances by step
+    private Value stepOf(Family family, int step, BasicBlock preheader) {
+        Integer scale = intConstant(family.scale());
+        if (scale != null) {
+            return Constant.of(scale * step);
+        }
+        if (step == 1) {
+            return family.scale();
+        }
+        Temp amount = function.newTemp(PrimitiveType.INTEGER);
+        preheader.instructions.add(new Instruction.Binary(amount, BinaryOperator.MUL, Constant.of(step), family.scale()));
+        return amount;
+    }
+
+    private Map<Value, Integer> countUses() {
+        Map<Value, Integer> uses = new HashMap<>();
+        for (BasicBlock block : function.blocks) {
+            for (Instruction instruction : block.instructions) {
+                instruction.operands().forEach(operand -> uses.merge(operand, 1, Integer::sum));
+            }
+            block.terminator.operands().forEach(operand -> uses.merge(operand, 1, Integer::sum));
+        }
+        return uses;
+    }
+
+    // Derived values are sums and products, which cannot throw, so unread ones can simply go
+    private void removeUnused(Set<Temp> candidates) {
+        boolean changed = true;
+        while (changed) {
+            Map<Value, Integer> uses = countUses();
+            changed = false;
+            for (BasicBlock block : function.blocks) {
+                changed |= block.instructions.removeIf(instruction -> instruction.result() instanceof Temp temp
+                        && candidates.contains(temp) && !uses.containsKey(temp));
+            }
+        }
+    }
+
+    private void reducePowersOfTwo() {
+        for (BasicBlock block : function.blocks) {
+            List<Instruction> instructions = block.instructions;
+            for (int i = 0; i < instructions.size(); i++) {
+                if (instructions.get(i) instanceof Instruction.Binary binary && binary.result().type() == PrimitiveType.INTEGER) {
+                    Instruction reduced = reduce(binary, block);
+                    if (reduced != null) {
+                        instructions.set(i, reduced);
+                    }
+                }
+            }
+        }
+    }
+
+    private Instruction reduce(Instruction.Binary binary, BasicBlock block) {
+        Temp result = binary.result();
+        int shift;
+        switch (binary.operator()) {
+            case MUL -> {
+                if ((shift = log2(binary.right())) >= 0) {
+                    return new Instruction.Binary(result, BinaryOperator.SHL, binary.left(), Constant.of(shift));
+                }
+                if ((shift = log2(binary.left())) >= 0) {
+                    return new Instruction.Binary(result, BinaryOperator.SHL, binary.right(), Constant.of(shift));
+                }
+            }
+            case DIV -> {
+                if ((shift = log2(binary.right())) >= 0 && shift < 31 && range(binary.left(), block, new HashSet<>()).low() >= 0) {
+                    return new Instruction.Binary(result, BinaryOperator.SHR, binary.left(), Constant.of(shift));
+                }
+            }
+            case REM -> {
+                if ((shift = log2(binary.right())) >= 0 && shift < 31 && range(binary.left(), block, new HashSet<>()).low() >= 0) {
+                    return new Instruction.Binary(result, BinaryOperator.AND, binary.left(), Constant.of((1 << shift) - 1));
+                }
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    // k when value is the integer constant 2^k, otherwise -1; 2^31 is Integer.MIN_VALUE
+    private static int log2(Value value) {
+        Integer constant = intConstant(value);
+        return constant != null && Integer.bitCount(constant) == 1 ? Integer.numberOfTrailingZeros(constant) : -1;
+    }
+
+    // Values an integer operand may hold when read in block
+    private Range range(Value value, BasicBlock block, Set<Variable> visiting) {
+        return switch (value) {
+            case Constant constant -> constant.value() instanceof Integer integer ? new Range(integer, integer) : Range.ANY;
+            case Temp temp -> {
+                Range known = ranges.get(temp);
+                if (known == null) {
+                    known = definitions.containsKey(temp) ? rangeOf(definitions.get(temp), definedIn.get(temp), visiting) : Range.ANY;
+                    ranges.put(temp, known);
+                }
+                yield known;
+            }
+            case Variable variable -> {
+                if (!visiting.add(variable)) {
+                    yield Range.ANY;
+                }
+                Range range = counterRange(variable, block, visiting);
+                visiting.remove(variable);
+                yield range;
+            }
+        };
+    }
+
+    private Range rangeOf(Instruction instruction, BasicBlock block, Set<Variable> visiting) {
+        if (instruction instanceof Instruction.Copy copy) {
+            return range(copy.source(), block, visiting);
+        }
+        if (!(instruction instanceof Instruction.Binary binary) || binary.result().type() != PrimitiveType.INTEGER) {
+            return Range.ANY;
+        }
+        Range left = range(binary.left(), block, visiting);
+        Range right = range(binary.right(), block, visiting);
+        Integer divisor = intConstant(binary.right());
+        return switch (binary.operator()) {
+            case ADD -> Range.of(left.low() + right.low(), left.high() + right.high());
+            case SUB -> Range.of(left.low() - right.high(), left.high() - right.low());
+            case MUL -> {
+                long[] products = {left.low() * right.low(), left.low() * right.high(),
+                        left.high() * right.low(), left.high() * right.high()};
+                yield Range.of(Arrays.stream(products).min().getAsLong(), Arrays.stream(products).max().getAsLong());
+            }
+            case DIV -> divisor != null && divisor > 0 && left.low() >= 0
+                    ? new Range(left.low() / divisor, left.high() / divisor) : Range.ANY;
+            case REM -> divisor != null && divisor > 0 && left.low() >= 0
+                    ? new Range(0, Math.min(left.high(), divisor - 1)) : Range.ANY;
+            case AND -> left.low() >= 0 || right.low() >= 0
+                    ? new Range(0, Math.min(left.low() >= 0 ? left.high() : Integer.MAX_VALUE,
+                    right.low() >= 0 ? right.high() : Integer.MAX_VALUE)) : Range.ANY;
+            case SHR -> divisor != null && divisor >= 0 && divisor < 32 && left.low() >= 0
+                    ? new Range(left.low() >> divisor, left.high() >> divisor) : Range.ANY;
+            default -> Range.ANY;
+        };
+    }
+
+    // A counter that starts at a known range, only grows by one update per iteration and is tested
+    // against a bound before every iteration stays between its start and the bound plus one step
+    private Range counterRange(Variable variable, BasicBlock block, Set<Variable> visiting) {
+        for (Loop loop : loops) {
+            if (!loop.contains(block) || !assignedIn(loop, variable)) {
+                continue;
+            }
+            Map<Instruction, Integer> updates = basicVariables(loop).get(variable);
+            if (updates == null || updates.size() != 1) {
+                return Range.ANY;
+            }
+            int step = updates.values().iterator().next();
+            Instruction update = updates.keySet().iterator().next();
+            BasicBlock updateBlock = null;
+            for (BasicBlock candidate : loop.blocks()) {
+                if (candidate.instructions.contains(update)) {
+                    updateBlock = candidate;
+                }
+            }
+            for (Loop inner : loops) {
+                if (inner != loop && inner.contains(updateBlock) && loop.blocks().containsAll(inner.blocks())) {
+                    return Range.ANY;
+                }
+            }
+            if (step <= 0 || !(loop.header().terminator instanceof Terminator.Branch test)
+                    || !variable.equals(test.left()) || !loop.contains(test.ifTrue()) || loop.contains(test.ifFalse())
+                    || (test.relation() != Relation.LT && test.relation() != Relation.LE)) {
+                return Range.ANY;
+            }
+            long last = range(test.right(), loop.header(), visiting).high() - (test.relation() == Relation.LT ? 1 : 0);
+            if (last + step > Integer.MAX_VALUE || function.parameters.contains(variable)) {
+                return Range.ANY;
+            }
+            Range start = null;
+            for (BasicBlock outside : function.blocks) {
+                if (loop.contains(outside)) {
+                    continue;
+                }
+                for (Instruction instruction : outside.instructions) {
+                    if (variable.equals(instruction.result())) {
+                        if (!(instruction instanceof Instruction.Copy copy)) {
+                            return Range.ANY;
+                        }
+                        Range source = range(copy.source(), outside, visiting);
+                        start = start == null ? source : new Range(Math.min(start.low(), source.low()), Math.max(start.high(), source.high()));
+                    }
+                }
+            }
+            return start == null ? Range.ANY : new Range(start.low(), Math.max(start.high(), last + step));
+        }
+        return Range.ANY;
+    }
+
+    private static boolean assignedIn(Loop loop, Variable variable) {
+        for (BasicBlock block : loop.blocks()) {
+            for (Instruction instruction : block.instructions) {
+                if (variable.equals(instruction.result())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+package ir;
+
+import types.Type;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns a call a routine makes to itself just before returning its result into a jump back to its
+ * start, after the arguments are assigned to the parameters, so deep recursion runs in one frame. The
+ * old entry becomes the loop header, and a new empty entry jumps to it, since nothing may jump to the
+ * entry. Locals need no reset: lowering initializes every variable where it is declared.
+ * <p>
+ * A parameter read as an argument is copied to a temporary first, so every argument still sees the
+ * parameters as they were at the call.
+ */
+public final class TailCallElimination {
+    private TailCallElimination() {
+    }
+
+    /**
+     * Returns whether any call was replaced.
+     */
+    public static boolean run(IrFunction function) {
+        // The main method is not a routine anything can call
+        if (function.depth == 0) {
+            return false;
+        }
+        List<BasicBlock> tails = new ArrayList<>();
+        for (BasicBlock block : function.blocks) {
+            if (selfCallReturned(function, block)) {
+                tails.add(block);
+            }
+        }
+        if (tails.isEmpty()) {
+            return false;
+        }
+        BasicBlock header = function.entry();
+        BasicBlock entry = function.newBlock();
+        entry.terminator = new Terminator.Jump(header);
+        function.blocks.add(0, entry);
+        for (BasicBlock block : tails) {
+            Instruction.Call call = (Instruction.Call) block.instructions.remove(block.instructions.size() - 1);
+            List<Value> arguments = new ArrayList<>();
+            for (int i = 0; i < function.parameters.size(); i++) {
+                Value argument = call.arguments().get(i);
+                if (argument instanceof Variable variable && function.parameters.contains(variable)
+                        && !variable.equals(function.parameters.get(i))) {
+                    Temp before = function.newTemp(variable.type());
+                    block.instructions.add(new Instruction.Copy(before, variable));
+                    argument = before;
+                }
+                arguments.add(argument);
+            }
+            for (int i = 0; i < function.parameters.size(); i++) {
+                Variable parameter = function.parameters.get(i);
+                if (!arguments.get(i).equals(parameter)) {
+                    block.instructions.add(new Instruction.Copy(parameter, arguments.get(i)));
+                }
+            }
+            block.terminator = new Terminator.Jump(header);
+        }
+        return true;
+    }
+
+    private static boolean selfCallReturned(IrFunction function, BasicBlock block) {
+        // A procedure's call may reach its return through the empty blocks that close an if
+        Terminator terminator = block.terminator;
+        Set<BasicBlock> seen = new HashSet<>();
+        while (terminator instanceof Terminator.Jump jump && jump.target().instructions.isEmpty()
+                && seen.add(jump.target())) {
+            terminator = jump.target().terminator;
+        }
+        if (!(terminator instanceof Terminator.Return ret) || block.instructions.isEmpty()
+                || !(block.instructions.get(block.instructions.size() - 1) instanceof Instruction.Call call)) {
+            return false;
+        }
+        List<Type> parameters = function.parameters.stream().map(Variable::type).toList();
+        MethodRef self = new MethodRef(function.name, parameters, function.returnType);
+        return call.method().name().equals(self.name()) && call.method().descriptor().equals(self.descriptor())
+                && (ret.value() == null || ret.value().equals(call.result()));
+    }
+}
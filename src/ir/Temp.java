@@ -0,0 +1,14 @@
+package ir;
+
+import types.Type;
+
+/**
+ * A value computed by one instruction for later instructions of the same function. Temporaries have no
+ * source name and no slot of their own; lowering keeps them on the operand stack where it can.
+ */
+public record Temp(int id, Type type) implements Value {
+    @Override
+    public String toString() {
+        return "t" + id;
+    }
+}
@@ -0,0 +1,107 @@
+package ir;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * The control transfer that ends a {@link BasicBlock}.
+ */
+public sealed interface Terminator {
+    List<BasicBlock> successors();
+
+    List<Value> operands();
+
+    Terminator withOperands(UnaryOperator<Value> mapping);
+
+    /**
+     * The same transfer with every successor replaced by {@code mapping} of it.
+     */
+    Terminator withTargets(UnaryOperator<BasicBlock> mapping);
+
+    record Jump(BasicBlock target) implements Terminator {
+        @Override
+        public Terminator withOperands(UnaryOperator<Value> mapping) {
+            return this;
+        }
+
+        @Override
+        public Terminator withTargets(UnaryOperator<BasicBlock> mapping) {
+            return new Jump(mapping.apply(target));
+        }
+
+        @Override
+        public List<BasicBlock> successors() {
+            return List.of(target);
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of();
+        }
+
+        @Override
+        public String toString() {
+            return "jump " + target;
+        }
+    }
+
+    /**
+     * Goes to {@code ifTrue} when {@code left relation right} holds, otherwise to {@code ifFalse}.
+     */
+    record Branch(Relation relation, Value left, Value right, BasicBlock ifTrue, BasicBlock ifFalse) implements Terminator {
+        @Override
+        public Terminator withOperands(UnaryOperator<Value> mapping) {
+            return new Branch(relation, mapping.apply(left), mapping.apply(right), ifTrue, ifFalse);
+        }
+
+        @Override
+        public Terminator withTargets(UnaryOperator<BasicBlock> mapping) {
+            return new Branch(relation, left, right, mapping.apply(ifTrue), mapping.apply(ifFalse));
+        }
+
+        @Override
+        public List<BasicBlock> successors() {
+            return List.of(ifTrue, ifFalse);
+        }
+
+        @Override
+        public List<Value> operands() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public String toString() {
+            return "branch " + left + " " + relation + " " + right + " ? " + ifTrue + " : " + ifFalse;
+        }
+    }
+
+    /**
+     * {@code value} is null when the function returns nothing.
+     */
+    record Return(Value value) implements Terminator {
+        @Override
+        public Terminator withOperands(UnaryOperator<Value> mapping) {
+            return value == null ? this : new Return(mapping.apply(value));
+        }
+
+        @Override
+        public Terminator withTargets(UnaryOperator<BasicBlock> mapping) {
+            return this;
+        }
+
+        @Override
+        public List<BasicBlock> successors() {
+            return List.of();
+        }
+
+        @Override
+        public List<Value> operands() {
+            return value == null ? List.of() : List.of(value);
+        }
+
+        @Override
+        public String toString() {
+            return value == null ? "return" : "return " + value;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ir;
+
+import types.Type;
+
+/**
+ * Operand of an IR instruction: a constant, a temporary, or a source-level variable.
+ */
+public sealed interface Value permits Constant, Temp, Variable {
+    Type type();
+}
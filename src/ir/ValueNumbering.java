@@ -0,0 +1,174 @@
+package ir;
+
+import java.util.*;
+
+/**
+ * Global value numbering over a function in SSA form. Walking the dominator tree, an arithmetic,
+ * comparison or conversion instruction with the same operator and operands as one in a dominating
+ * block is deleted, and its uses read the earlier result instead. Each version of a variable is its own
+ * value, so equal operands always hold equal values; only ordinary temporaries are ever merged.
+ * <p>
+ * A load of a record field or array element is reused only while nothing could have stored to it: in
+ * the same block, or in a block only its immediate dominator leads to, and until a store to that field
+ * of that record type, an array store of that element type, or a call {@link SideEffects} cannot rule
+ * out.
+ */
+public final class ValueNumbering {
+    private final IrFunction function;
+    private final SideEffects effects;
+    private final Dominators dominators;
+    private final Map<BasicBlock, List<BasicBlock>> predecessors;
+    // Expressions computed in the dominators of the block being visited, and the temporary holding each
+    private final Map<List<Object>, Temp> available = new HashMap<>();
+    private final Map<Temp, Temp> leaders = new HashMap<>();
+    private final Map<BasicBlock, Memory> memoryAtExit = new HashMap<>();
+    private int nextGeneration;
+    private int eliminated;
+
+    /**
+     * Loads are keyed by the generation of what they read, so a store leaves earlier loads unmatched.
+     */
+    private static final class Memory {
+        int everything;
+        final Map<String, Integer> stored = new HashMap<>();
+
+        Memory(int everything) {
+            this.everything = everything;
+        }
+
+        Memory copy() {
+            Memory copy = new Memory(everything);
+            copy.stored.putAll(stored);
+            return copy;
+        }
+
+        List<Object> generation(String location) {
+            return List.of(everything, stored.getOrDefault(location, 0));
+        }
+    }
+
+    private ValueNumbering(IrFunction function, SideEffects effects) {
+        this.function = function;
+        this.effects = effects;
+        this.dominators = new Dominators(function);
+        this.predecessors = function.predecessors();
+    }
+
+    /**
+     * Returns how many instructions were eliminated.
+     */
+    public static int run(IrFunction function, SideEffects effects) {
+        ValueNumbering numbering = new ValueNumbering(function, effects);
+        numbering.walk();
+        return numbering.eliminated;
+    }
+
+    private void walk() {
+        // Explicit stack of (block, keys it added) pairs: visit a block, then forget its keys on exit
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{function.entry(), null});
+        while (!stack.isEmpty()) {
+            Object[] frame = stack.pop();
+            BasicBlock block = (BasicBlock) frame[0];
+            if (frame[1] != null) {
+                @SuppressWarnings("unchecked")
+                List<List<Object>> added = (List<List<Object>>) frame[1];
+                available.keySet().removeAll(added);
+                continue;
+            }
+            stack.push(new Object[]{block, visit(block)});
+            List<BasicBlock> children = dominators.children(block);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new Object[]{children.get(i), null});
+            }
+        }
+    }
+
+    private List<List<Object>> visit(BasicBlock block) {
+        BasicBlock dominator = dominators.idom(block);
+        List<BasicBlock> incoming = predecessors.get(block);
+        Memory memory = dominator != null && incoming.size() == 1 && incoming.getFirst() == dominator
+                ? memoryAtExit.get(dominator).copy()
+                : new Memory(++nextGeneration);
+
+        List<List<Object>> added = new ArrayList<>();
+        List<Instruction> instructions = new ArrayList<>();
+        for (Instruction instruction : block.instructions) {
+            // Phis only read versions, which are never replaced
+            if (!(instruction instanceof Instruction.Phi)) {
+                instruction = instruction.withOperands(this::leaderOf);
+            }
+            List<Object> key = key(instruction, memory);
+            if (key != null) {
+                Temp result = (Temp) instruction.result();
+                Temp leader = available.get(key);
+                if (leader != null) {
+                    leaders.put(result, leader);
+                    eliminated++;
+                    continue;
+                }
+                available.put(key, result);
+                added.add(key);
+            }
+            switch (instruction) {
+                case Instruction.PutField put ->
+                        memory.stored.put(put.record().name() + "." + put.field(), ++nextGeneration);
+                case Instruction.ArrayStore store ->
+                        memory.stored.put("[" + store.element().descriptor(), ++nextGeneration);
+                case Instruction.Call call when effects.storesMemory(call.method()) -> {
+                    memory.everything = ++nextGeneration;
+                    memory.stored.clear();
+                }
+                default -> {
+                }
+            }
+            instructions.add(instruction);
+        }
+        block.instructions.clear();
+        block.instructions.addAll(instructions);
+        block.terminator = block.terminator.withOperands(this::leaderOf);
+        memoryAtExit.put(block, memory);
+        return added;
+    }
+
+    private Value leaderOf(Value value) {
+        return value instanceof Temp temp && leaders.containsKey(temp) ? leaders.get(temp) : value;
+    }
+
+    /**
+     * What {@code instruction} computes, or null when it is not a candidate for reuse.
+     */
+    private static List<Object> key(Instruction instruction, Memory memory) {
+        return switch (instruction) {
+            case Instruction.Binary binary -> {
+                Value left = binary.left();
+                Value right = binary.right();
+                if (commutative(binary.operator()) && left.toString().compareTo(right.toString()) > 0) {
+                    left = binary.right();
+                    right = binary.left();
+                }
+                yield List.of(binary.operator(), left, right);
+            }
+            case Instruction.Compare compare -> List.of(compare.relation(), compare.left(), compare.right());
+            case Instruction.Negate negate -> List.of("neg", negate.operand());
+            case Instruction.Not not -> List.of("not", not.operand());
+            case Instruction.Convert convert -> List.of("convert", convert.source(), convert.result().type());
+            case Instruction.GetField load -> {
+                String location = load.record().name() + "." + load.field();
+                yield List.of(location, load.object(), memory.generation(location));
+            }
+            case Instruction.ArrayLoad load -> {
+                String location = "[" + load.result().type().descriptor();
+                yield List.of(location, load.array(), load.index(), memory.generation(location));
+            }
+            default -> null;
+        };
+    }
+
+    private static boolean commutative(BinaryOperator operator) {
+        return switch (operator) {
+            case ADD, MUL, AND, OR -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package ir;
+
+import symbols.Declaration;
+import types.Type;
+
+/**
+ * A variable, parameter or loop variable of the function, living in its declaration's slot.
+ */
+public record Variable(Declaration declaration) implements Value {
+    @Override
+    public Type type() {
+        return declaration.type;
+    }
+
+    @Override
+    public String toString() {
+        return declaration.name() + "#" + declaration.slot;
+    }
+}
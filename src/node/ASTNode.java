@@ -1,3 +1,17 @@
 package node;
 
-public abstract class ASTNode {}
+import types.Type;
+
+public abstract sealed class ASTNode permits ArrayDeclarationNode, ArrayTypeNode, AssignmentNode, BinaryOperationNode,
+        ForLoopNode, FunctionCallNode, IdentifierNode, IfStatementNode,
+        LValueNode, LiteralNode, ParamNode, PrintStatementNode,
+        ProgramNode, RecordDeclarationNode, ReturnStatementNode, RoutineDeclarationNode,
+        TypeNode, UnaryOperationNode, VarDeclarationNode, WhileLoopNode {
+    /**
+     * Set by the type checker: the value type of an expression, the declared type of a variable,
+     * parameter or record, and the return type of a routine. Null until checked or when unresolved.
+     */
+    public Type resolvedType;
+
+    public abstract <R> R accept(Visitor<R> visitor);
+}
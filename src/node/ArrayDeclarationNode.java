@@ -1,13 +1,31 @@
 package node;
 
-public class ArrayDeclarationNode extends ASTNode {
+import symbols.Declaration;
+import symbols.SymbolTable;
+
+public final class ArrayDeclarationNode extends ASTNode {
     public String identifier;
+    public int symbol;
+    /**
+     * The declaration this node introduces, set by the name resolver.
+     */
+    public Declaration declaration;
     public int size;
     public ASTNode type;
 
     public ArrayDeclarationNode(String identifier, int size, ASTNode type) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), size, type);
+    }
+
+    public ArrayDeclarationNode(int symbol, int size, ASTNode type) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.size = size;
         this.type = type;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -1,6 +1,6 @@
 package node;
 
-public class ArrayTypeNode extends ASTNode {
+public final class ArrayTypeNode extends ASTNode {
     public String name;
     public int size;
 
@@ -9,4 +9,8 @@ public class ArrayTypeNode extends ASTNode {
         this.size = size;
     }
 
-}
\ No newline at end of file
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+}
@@ -1,6 +1,6 @@
 package node;
 
-public class AssignmentNode extends ASTNode {
+public final class AssignmentNode extends ASTNode {
     public ASTNode lvalue;
     public ASTNode expression;
 
@@ -8,4 +8,9 @@ public class AssignmentNode extends ASTNode {
         this.lvalue = lvalue;
         this.expression = expression;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -2,7 +2,7 @@ package node;
 
 import tokens.TokenType;
 
-public class BinaryOperationNode extends ASTNode {
+public final class BinaryOperationNode extends ASTNode {
     public ASTNode left;
     public TokenType operator;
     public ASTNode right;
@@ -12,4 +12,9 @@ public class BinaryOperationNode extends ASTNode {
         this.operator = operator;
         this.right = right;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
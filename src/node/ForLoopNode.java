@@ -1,17 +1,35 @@
 package node;
 
+import symbols.Declaration;
+import symbols.SymbolTable;
+
 import java.util.List;
 
-public class ForLoopNode extends ASTNode {
+public final class ForLoopNode extends ASTNode {
     public String identifier;
+    public int symbol;
+    /**
+     * The declaration this node introduces, set by the name resolver.
+     */
+    public Declaration declaration;
     public ASTNode startExpression;
     public ASTNode endExpression;
     public List<ASTNode> body;
 
     public ForLoopNode(String identifier, ASTNode startExpression, ASTNode endExpression, List<ASTNode> body) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), startExpression, endExpression, body);
+    }
+
+    public ForLoopNode(int symbol, ASTNode startExpression, ASTNode endExpression, List<ASTNode> body) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.startExpression = startExpression;
         this.endExpression = endExpression;
         this.body = body;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -1,13 +1,26 @@
 package node;
 
+import symbols.SymbolTable;
+
 import java.util.List;
 
-public class FunctionCallNode extends ASTNode {
+public final class FunctionCallNode extends ASTNode {
     public String identifier;
+    public int symbol;
     public List<ASTNode> arguments;
 
     public FunctionCallNode(String identifier, List<ASTNode> arguments) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), arguments);
+    }
+
+    public FunctionCallNode(int symbol, List<ASTNode> arguments) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.arguments = arguments;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
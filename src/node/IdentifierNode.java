@@ -1,13 +1,31 @@
 package node;
 
-public class IdentifierNode extends ASTNode {
+import symbols.Declaration;
+import symbols.SymbolTable;
+
+public final class IdentifierNode extends ASTNode {
     public String name;
+    public int symbol;
+    /**
+     * What this name refers to, set by the name resolver; null when nothing by that name is in scope.
+     */
+    public Declaration declaration;
 
     public IdentifierNode(String name) {
-        this.name = name;
+        this(SymbolTable.intern(name));
+    }
+
+    public IdentifierNode(int symbol) {
+        this.symbol = symbol;
+        this.name = SymbolTable.name(symbol);
     }
 
     public String getName() {
         return name;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -2,7 +2,7 @@ package node;
 
 import java.util.List;
 
-public class IfStatementNode extends ASTNode {
+public final class IfStatementNode extends ASTNode {
     public ASTNode condition;
     public List<ASTNode> thenStatements;
     public List<ASTNode> elsifStatements;
@@ -34,4 +34,9 @@ public class IfStatementNode extends ASTNode {
         }
         return false;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -1,6 +1,6 @@
 package node;
 
-public class LValueNode extends ASTNode {
+public final class LValueNode extends ASTNode {
     public ASTNode base;
     public String field;
     public ASTNode index;
@@ -10,5 +10,9 @@ public class LValueNode extends ASTNode {
         this.field = field;
         this.index = index;
     }
-}
 
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+}
@@ -1,9 +1,14 @@
 package node;
 
-public class LiteralNode extends ASTNode {
+public final class LiteralNode extends ASTNode {
     public Object value;
 
     public LiteralNode(Object value) {
         this.value = value;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
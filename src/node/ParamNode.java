@@ -1,11 +1,29 @@
 package node;
 
-public class ParamNode extends ASTNode {
+import symbols.Declaration;
+import symbols.SymbolTable;
+
+public final class ParamNode extends ASTNode {
     public String identifier;
+    public int symbol;
+    /**
+     * The declaration this node introduces, set by the name resolver.
+     */
+    public Declaration declaration;
     public ASTNode type;
 
     public ParamNode(String identifier, ASTNode type) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), type);
+    }
+
+    public ParamNode(int symbol, ASTNode type) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.type = type;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -1,9 +1,14 @@
 package node;
 
-public class PrintStatementNode extends ASTNode {
+public final class PrintStatementNode extends ASTNode {
     public ASTNode expression;
 
     public PrintStatementNode(ASTNode expression) {
         this.expression = expression;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -2,10 +2,15 @@ package node;
 
 import java.util.List;
 
-public class ProgramNode extends ASTNode {
+public final class ProgramNode extends ASTNode {
     public List<ASTNode> statements;
 
     public ProgramNode(List<ASTNode> statements) {
         this.statements = statements;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -1,13 +1,26 @@
 package node;
 
+import symbols.SymbolTable;
+
 import java.util.List;
 
-public class RecordDeclarationNode extends ASTNode {
+public final class RecordDeclarationNode extends ASTNode {
     public String identifier;
+    public int symbol;
     public List<VarDeclarationNode> fields;
 
     public RecordDeclarationNode(String identifier, List<VarDeclarationNode> fields) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), fields);
+    }
+
+    public RecordDeclarationNode(int symbol, List<VarDeclarationNode> fields) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.fields = fields;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
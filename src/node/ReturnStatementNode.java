@@ -1,9 +1,14 @@
 package node;
 
-public class ReturnStatementNode extends ASTNode {
+public final class ReturnStatementNode extends ASTNode {
     public ASTNode expression;
 
     public ReturnStatementNode(ASTNode expression) {
         this.expression = expression;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -1,17 +1,30 @@
 package node;
 
+import symbols.SymbolTable;
+
 import java.util.List;
 
-public class RoutineDeclarationNode extends ASTNode {
+public final class RoutineDeclarationNode extends ASTNode {
     public String identifier;
+    public int symbol;
     public List<ParamNode> params;
     public ASTNode returnType;
     public List<ASTNode> body;
 
     public RoutineDeclarationNode(String identifier, List<ParamNode> params, ASTNode returnType, List<ASTNode> body) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), params, returnType, body);
+    }
+
+    public RoutineDeclarationNode(int symbol, List<ParamNode> params, ASTNode returnType, List<ASTNode> body) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.params = params;
         this.returnType = returnType;
         this.body = body;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
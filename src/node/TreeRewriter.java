@@ -0,0 +1,136 @@
+package node;
+
+import java.util.List;
+
+/**
+ * Visitor that rebuilds the tree bottom-up: every child is replaced by what visiting it returns, and
+ * each visit returns the node that should take the visited node's place. The defaults keep every node
+ * and descend into all children; a pass overrides the kinds it rewrites. Lists are updated in place
+ * and keep their element type, so a rewrite inside a typed list must return a node of that type.
+ */
+public class TreeRewriter implements Visitor<ASTNode> {
+    public ASTNode rewrite(ASTNode node) {
+        return node == null ? null : node.accept(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T extends ASTNode> void rewriteAll(List<T> nodes) {
+        if (nodes != null) {
+            nodes.replaceAll(node -> (T) rewrite(node));
+        }
+    }
+
+    // Leaves: identifiers, literals and type names
+    @Override
+    public ASTNode visitNode(ASTNode node) {
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(ProgramNode node) {
+        rewriteAll(node.statements);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(VarDeclarationNode node) {
+        node.type = rewrite(node.type);
+        node.expression = rewrite(node.expression);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(AssignmentNode node) {
+        node.lvalue = rewrite(node.lvalue);
+        node.expression = rewrite(node.expression);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(IfStatementNode node) {
+        node.condition = rewrite(node.condition);
+        rewriteAll(node.thenStatements);
+        rewriteAll(node.elsifStatements);
+        rewriteAll(node.elseStatements);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(WhileLoopNode node) {
+        node.condition = rewrite(node.condition);
+        rewriteAll(node.body);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(ForLoopNode node) {
+        node.startExpression = rewrite(node.startExpression);
+        node.endExpression = rewrite(node.endExpression);
+        rewriteAll(node.body);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(RoutineDeclarationNode node) {
+        rewriteAll(node.params);
+        node.returnType = rewrite(node.returnType);
+        rewriteAll(node.body);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(ParamNode node) {
+        node.type = rewrite(node.type);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(ReturnStatementNode node) {
+        node.expression = rewrite(node.expression);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(PrintStatementNode node) {
+        node.expression = rewrite(node.expression);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(RecordDeclarationNode node) {
+        rewriteAll(node.fields);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(ArrayDeclarationNode node) {
+        node.type = rewrite(node.type);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(BinaryOperationNode node) {
+        node.left = rewrite(node.left);
+        node.right = rewrite(node.right);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(UnaryOperationNode node) {
+        node.operand = rewrite(node.operand);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(LValueNode node) {
+        node.base = rewrite(node.base);
+        node.index = rewrite(node.index);
+        return node;
+    }
+
+    @Override
+    public ASTNode visit(FunctionCallNode node) {
+        rewriteAll(node.arguments);
+        return node;
+    }
+}
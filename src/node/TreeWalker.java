@@ -0,0 +1,137 @@
+package node;
+
+import java.util.List;
+
+/**
+ * Read-only visitor that walks every child in source order. Analysis passes override the kinds they
+ * look at and call {@link #walk} where they want to keep descending.
+ */
+public class TreeWalker implements Visitor<Void> {
+    public void walk(ASTNode node) {
+        if (node != null) {
+            node.accept(this);
+        }
+    }
+
+    protected void walkAll(List<? extends ASTNode> nodes) {
+        if (nodes != null) {
+            for (ASTNode node : nodes) {
+                walk(node);
+            }
+        }
+    }
+
+    // Leaves: identifiers, literals and type names
+    @Override
+    public Void visitNode(ASTNode node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ProgramNode node) {
+        walkAll(node.statements);
+        return null;
+    }
+
+    @Override
+    public Void visit(VarDeclarationNode node) {
+        walk(node.type);
+        walk(node.expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(AssignmentNode node) {
+        walk(node.lvalue);
+        walk(node.expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(IfStatementNode node) {
+        walk(node.condition);
+        walkAll(node.thenStatements);
+        walkAll(node.elsifStatements);
+        walkAll(node.elseStatements);
+        return null;
+    }
+
+    @Override
+    public Void visit(WhileLoopNode node) {
+        walk(node.condition);
+        walkAll(node.body);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForLoopNode node) {
+        walk(node.startExpression);
+        walk(node.endExpression);
+        walkAll(node.body);
+        return null;
+    }
+
+    @Override
+    public Void visit(RoutineDeclarationNode node) {
+        walkAll(node.params);
+        walk(node.returnType);
+        walkAll(node.body);
+        return null;
+    }
+
+    @Override
+    public Void visit(ParamNode node) {
+        walk(node.type);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStatementNode node) {
+        walk(node.expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrintStatementNode node) {
+        walk(node.expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(RecordDeclarationNode node) {
+        walkAll(node.fields);
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayDeclarationNode node) {
+        walk(node.type);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryOperationNode node) {
+        walk(node.left);
+        walk(node.right);
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryOperationNode node) {
+        walk(node.operand);
+        return null;
+    }
+
+    @Override
+    public Void visit(LValueNode node) {
+        walk(node.base);
+        walk(node.index);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionCallNode node) {
+        walkAll(node.arguments);
+        return null;
+    }
+}
@@ -1,9 +1,22 @@
 package node;
 
-public class TypeNode extends ASTNode {
+import symbols.SymbolTable;
+
+public final class TypeNode extends ASTNode {
     public String typeName;
+    public int symbol;
 
     public TypeNode(String typeName) {
-        this.typeName = typeName;
+        this(SymbolTable.intern(typeName));
+    }
+
+    public TypeNode(int symbol) {
+        this.symbol = symbol;
+        this.typeName = SymbolTable.name(symbol);
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
     }
 }
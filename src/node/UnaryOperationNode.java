@@ -2,7 +2,7 @@ package node;
 
 import tokens.TokenType;
 
-public class UnaryOperationNode extends ASTNode {
+public final class UnaryOperationNode extends ASTNode {
     public TokenType operator;
     public ASTNode operand;
 
@@ -10,4 +10,9 @@ public class UnaryOperationNode extends ASTNode {
         this.operator = operator;
         this.operand = operand;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
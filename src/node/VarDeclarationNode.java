@@ -1,13 +1,31 @@
 package node;
 
-public class VarDeclarationNode extends ASTNode {
+import symbols.Declaration;
+import symbols.SymbolTable;
+
+public final class VarDeclarationNode extends ASTNode {
     public String identifier;
+    public int symbol;
+    /**
+     * The declaration this node introduces, set by the name resolver.
+     */
+    public Declaration declaration;
     public ASTNode type;
     public ASTNode expression;
 
     public VarDeclarationNode(String identifier, ASTNode type, ASTNode expression) {
-        this.identifier = identifier;
+        this(SymbolTable.intern(identifier), type, expression);
+    }
+
+    public VarDeclarationNode(int symbol, ASTNode type, ASTNode expression) {
+        this.symbol = symbol;
+        this.identifier = SymbolTable.name(symbol);
         this.type = type;
         this.expression = expression;
     }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
 }
@@ -0,0 +1,89 @@
+package node;
+
+/**
+ * Double dispatch over the node classes. Every kind a visitor does not handle itself ends up in
+ * {@link #visitNode}.
+ */
+public interface Visitor<R> {
+    R visitNode(ASTNode node);
+
+    default R visit(ArrayDeclarationNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(ArrayTypeNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(AssignmentNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(BinaryOperationNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(ForLoopNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(FunctionCallNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(IdentifierNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(IfStatementNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(LValueNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(LiteralNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(ParamNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(PrintStatementNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(ProgramNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(RecordDeclarationNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(ReturnStatementNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(RoutineDeclarationNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(TypeNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(UnaryOperationNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(VarDeclarationNode node) {
+        return visitNode(node);
+    }
+
+    default R visit(WhileLoopNode node) {
+        return visitNode(node);
+    }
+}
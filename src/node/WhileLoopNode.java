@@ -2,7 +2,7 @@ package node;
 
 import java.util.List;
 
-public class WhileLoopNode extends ASTNode {
+public final class WhileLoopNode extends ASTNode {
     public ASTNode condition;
     public List<ASTNode> body;
 
@@ -10,5 +10,9 @@ public class WhileLoopNode extends ASTNode {
         this.condition = condition;
         this.body = body;
     }
-}
 
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visit(this);
+    }
+}
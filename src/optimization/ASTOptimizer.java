@@ -3,28 +3,43 @@ package optimization;
 import node.ASTNode;
 import node.ProgramNode;
 import node.RoutineDeclarationNode;
+import pass.PassManager;
+import pass.TransformPass;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ASTOptimizer {
+    /**
+     * The rewrites added by {@link #addPasses}, for passes that must see the optimized tree.
+     */
+    public static final List<String> TRANSFORMS = List.of(
+            "constant-folding", "dead-code-elimination");
+
     private final ConstantExpressionSimplifier constSimplifier = new ConstantExpressionSimplifier();
     private final DeadCodeEliminator deadCodeEliminator = new DeadCodeEliminator();
-    private final UnusedVariableRemover unusedVariableRemover = new UnusedVariableRemover();
-    private final FunctionInliningOptimizer functionInliningOptimizer = new FunctionInliningOptimizer();
+
+    /**
+     * Unused variables and dead assignments are left to {@link ir.DeadStoreElimination}, which sees
+     * through every block of every routine.
+     */
+    public void addPasses(PassManager passes) {
+        passes.add(TransformPass.of("constant-folding", List.of(), this::simplifyConstants));
+        passes.add(TransformPass.of("dead-code-elimination", List.of(), this::eliminateDeadCode));
+    }
 
     public ProgramNode optimize(ProgramNode program) {
-        program.statements.replaceAll(constSimplifier::simplify);
-        for (ASTNode node : program.statements) {
-            unusedVariableRemover.collectUsedVariables(node);
-        }
-        program = unusedVariableRemover.removeUnusedVariables(program);
+        PassManager passes = new PassManager(false);
+        addPasses(passes);
+        return passes.run(program);
+    }
 
-        functionInliningOptimizer.collectFunctions(program.statements);
-        for (int i = 0; i < program.statements.size(); i++) {
-            program.statements.set(i, functionInliningOptimizer.inlineFunctionCalls(program.statements.get(i)));
-        }
+    private ProgramNode simplifyConstants(ProgramNode program) {
+        program.statements.replaceAll(constSimplifier::simplify);
+        return program;
+    }
 
+    private ProgramNode eliminateDeadCode(ProgramNode program) {
         List<ASTNode> optimizedStatements = new ArrayList<>();
         for (ASTNode statement : program.statements) {
             if (statement instanceof RoutineDeclarationNode routine) {
@@ -35,4 +50,3 @@ public class ASTOptimizer {
         return new ProgramNode(optimizedStatements);
     }
 }
-
@@ -3,59 +3,89 @@ package optimization;
 import node.*;
 import tokens.TokenType;
 
-public class ConstantExpressionSimplifier {
+/**
+ * Folds operators applied to literals. Only expressions in declarations, assignment right-hand sides,
+ * conditions of if statements and the bodies of blocks are visited.
+ */
+public class ConstantExpressionSimplifier extends TreeRewriter {
     public ASTNode simplify(ASTNode node) {
-        if (node instanceof BinaryOperationNode binaryOp) {
-            binaryOp.left = simplify(binaryOp.left);
-            binaryOp.right = simplify(binaryOp.right);
-
-            if (binaryOp.left instanceof LiteralNode leftLiteral && binaryOp.right instanceof LiteralNode rightLiteral) {
-                Object leftVal = leftLiteral.value;
-                Object rightVal = rightLiteral.value;
-                Object result = applyBinaryOperator(leftVal, binaryOp.operator, rightVal);
-                if (result != null) {
-                    return new LiteralNode(result);
-                }
-            }
-        } else if (node instanceof UnaryOperationNode unaryOp) {
-            unaryOp.operand = simplify(unaryOp.operand);
-
-            if (unaryOp.operand instanceof LiteralNode operandLiteral) {
-                Object operandVal = operandLiteral.value;
-                Object result = evaluateUnaryExpression(operandVal, unaryOp.operator);
-                if (result != null) {
-                    return new LiteralNode(result);
-                }
-            }
-        } else if (node instanceof VarDeclarationNode varDecl) {
-            varDecl.expression = simplify(varDecl.expression);
-        } else if (node instanceof AssignmentNode assignment) {
-            assignment.expression = simplify(assignment.expression);
-        } else if (node instanceof IfStatementNode ifStatement) {
-            ifStatement.condition = simplify(ifStatement.condition);
-            if (ifStatement.thenStatements != null) {
-                ifStatement.thenStatements.replaceAll(this::simplify);
-            }
-            if (ifStatement.elseStatements != null) {
-                ifStatement.elseStatements.replaceAll(this::simplify);
-            }
-            if (ifStatement.elsifStatements != null) {
-                ifStatement.elsifStatements.replaceAll(this::simplify);
-            }
-        } else if (node instanceof ForLoopNode forLoopNode) {
-            if (forLoopNode.body != null) {
-                forLoopNode.body.replaceAll(this::simplify);
-            }
-        } else if (node instanceof WhileLoopNode whileLoopNode) {
-            if (whileLoopNode.body != null) {
-                whileLoopNode.body.replaceAll(this::simplify);
+        return rewrite(node);
+    }
+
+    @Override
+    public ASTNode visit(BinaryOperationNode binaryOp) {
+        binaryOp.left = rewrite(binaryOp.left);
+        binaryOp.right = rewrite(binaryOp.right);
+
+        if (binaryOp.left instanceof LiteralNode leftLiteral && binaryOp.right instanceof LiteralNode rightLiteral) {
+            Object result = applyBinaryOperator(leftLiteral.value, binaryOp.operator, rightLiteral.value);
+            if (result != null) {
+                return new LiteralNode(result);
             }
-        } else if (node instanceof RoutineDeclarationNode routineDeclaration) {
-            if (routineDeclaration.body != null) {
-                routineDeclaration.body.replaceAll(this::simplify);
+        }
+        return binaryOp;
+    }
+
+    @Override
+    public ASTNode visit(UnaryOperationNode unaryOp) {
+        unaryOp.operand = rewrite(unaryOp.operand);
+
+        if (unaryOp.operand instanceof LiteralNode operandLiteral) {
+            Object result = evaluateUnaryExpression(operandLiteral.value, unaryOp.operator);
+            if (result != null) {
+                return new LiteralNode(result);
             }
         }
-        return node;
+        return unaryOp;
+    }
+
+    @Override
+    public ASTNode visit(AssignmentNode assignment) {
+        assignment.expression = rewrite(assignment.expression);
+        return assignment;
+    }
+
+    @Override
+    public ASTNode visit(ForLoopNode forLoopNode) {
+        rewriteAll(forLoopNode.body);
+        return forLoopNode;
+    }
+
+    @Override
+    public ASTNode visit(WhileLoopNode whileLoopNode) {
+        rewriteAll(whileLoopNode.body);
+        return whileLoopNode;
+    }
+
+    @Override
+    public ASTNode visit(RoutineDeclarationNode routineDeclaration) {
+        rewriteAll(routineDeclaration.body);
+        return routineDeclaration;
+    }
+
+    @Override
+    public ASTNode visit(PrintStatementNode printStatement) {
+        return printStatement;
+    }
+
+    @Override
+    public ASTNode visit(ReturnStatementNode returnStatement) {
+        return returnStatement;
+    }
+
+    @Override
+    public ASTNode visit(FunctionCallNode functionCall) {
+        return functionCall;
+    }
+
+    @Override
+    public ASTNode visit(LValueNode lValue) {
+        return lValue;
+    }
+
+    @Override
+    public ASTNode visit(RecordDeclarationNode recordDeclaration) {
+        return recordDeclaration;
     }
 
     private Object applyBinaryOperator(Object left, TokenType operator, Object right) {
@@ -5,40 +5,23 @@ import node.*;
 import java.util.ArrayList;
 import java.util.List;
 
-public class DeadCodeEliminator {
+public class DeadCodeEliminator implements Visitor<ASTNode> {
     public List<ASTNode> eliminateDeadCode(List<ASTNode> nodes) {
         List<ASTNode> optimizedNodes = new ArrayList<>();
-        boolean returnReached = false;
-
         for (ASTNode node : nodes) {
-            if (returnReached) {
-                continue;
-            }
-
-            switch (node) {
-                case ReturnStatementNode ignored -> {
-                    optimizedNodes.add(node);
-                    returnReached = true;
-                }
-                case IfStatementNode ifNode -> {
-                    IfStatementNode optimizedIf = optimizeIfNode(ifNode);
-                    optimizedNodes.add(optimizedIf);
-                    if (optimizedIf.containsReturn()) {
-                        returnReached = true;
-                    }
-                }
-                case WhileLoopNode whileNode -> {
-                    WhileLoopNode optimizedWhile = optimizeWhileNode(whileNode);
-                    optimizedNodes.add(optimizedWhile);
-                }
-                case null, default -> optimizedNodes.add(node);
+            ASTNode optimized = node == null ? null : node.accept(this);
+            optimizedNodes.add(optimized);
+            // An if that returns on some path can still fall through; code generation drops whatever
+            // no path reaches
+            if (optimized instanceof ReturnStatementNode) {
+                break;
             }
         }
-
         return optimizedNodes;
     }
 
-    private IfStatementNode optimizeIfNode(IfStatementNode ifNode) {
+    @Override
+    public ASTNode visit(IfStatementNode ifNode) {
         List<ASTNode> thenStatements = new ArrayList<>();
         List<ASTNode> elseStatements = new ArrayList<>();
         List<ASTNode> elseifStatements = new ArrayList<>();
@@ -50,17 +33,23 @@ public class DeadCodeEliminator {
             elseStatements = eliminateDeadCode(ifNode.elseStatements);
         }
         if (ifNode.elsifStatements != null) {
-            for (int i = 0; i < ifNode.elsifStatements.size(); i++) {
-                IfStatementNode optimizedIf = optimizeIfNode((IfStatementNode) ifNode.elsifStatements.get(i));
-                elseifStatements.add(optimizedIf);
+            for (ASTNode elsif : ifNode.elsifStatements) {
+                elseifStatements.add(elsif.accept(this));
             }
         }
 
         return new IfStatementNode(ifNode.condition, thenStatements, elseifStatements, elseStatements);
     }
 
-    private WhileLoopNode optimizeWhileNode(WhileLoopNode whileNode) {
+    @Override
+    public ASTNode visit(WhileLoopNode whileNode) {
         List<ASTNode> optimizedBody = eliminateDeadCode(whileNode.body);
         return new WhileLoopNode(whileNode.condition, optimizedBody);
     }
+
+    // Statements other than if and while are kept as they are
+    @Override
+    public ASTNode visitNode(ASTNode node) {
+        return node;
+    }
 }
@@ -0,0 +1,7 @@
+package pass;
+
+/**
+ * A read-only pass. Analyses whose dependencies are all satisfied share a single walk of the tree.
+ */
+public non-sealed interface AnalysisPass extends Pass, AstListener {
+}
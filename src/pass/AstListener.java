@@ -0,0 +1,37 @@
+package pass;
+
+import node.ASTNode;
+
+/**
+ * Callbacks for a {@link FusedWalker}. Several listeners share one traversal of the tree, so a listener
+ * that only looks at statements should skip expression subtrees instead of visiting them.
+ */
+public interface AstListener {
+    /**
+     * Called before the children of {@code node} are walked. {@code statement} is true for top-level
+     * statements and members of a block. Returning false skips the subtree, including its {@link #exit},
+     * for this listener only.
+     */
+    default boolean enter(ASTNode node, boolean statement) {
+        return true;
+    }
+
+    default void exit(ASTNode node) {
+    }
+
+    /**
+     * Called around a statement list owned by a routine, loop or branch. An if statement owns up to two
+     * blocks, its then and else branches; its elsif branches are walked as statements.
+     */
+    default void enterBlock(ASTNode owner) {
+    }
+
+    default void exitBlock(ASTNode owner) {
+    }
+
+    /**
+     * Called by {@link FusedWalker#join} once the walk is over, including routine bodies walked on a pool.
+     */
+    default void finished() {
+    }
+}
@@ -0,0 +1,13 @@
+package pass;
+
+/**
+ * An analysis whose work inside a routine depends only on what was declared before the routine, so a
+ * {@link FusedWalker} with a pool can hand each routine body to a copy running on another thread.
+ */
+public interface ForkablePass extends AnalysisPass {
+    /**
+     * A copy starting from this pass's state right after it entered the routine. The copy must not share
+     * anything mutable with this pass and reports through {@link RoutineFork#diagnostics}.
+     */
+    ForkablePass fork(RoutineFork fork);
+}
@@ -0,0 +1,251 @@
+package pass;
+
+import node.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Walks the tree once and forwards every node to several listeners. A listener that skipped a subtree
+ * is left out until the walk comes back up past the node it skipped.
+ * <p>
+ * Given a pool, a routine whose listeners are all {@link ForkablePass}es is walked by forked copies on
+ * the pool while this walker moves on; {@link #join} waits for them. Routines that declare nested
+ * routines or records are walked in place, since those declarations would not reach later code.
+ */
+public final class FusedWalker extends TreeWalker {
+    private final AstListener[] listeners;
+    private final long[] nanos;
+    // Depth at which each listener skipped, 0 while it is still listening
+    private final int[] skippedAt;
+    private int depth;
+    private boolean nextIsStatement;
+    private final ForkJoinPool pool;
+    private final List<RoutineTask> routineTasks = new ArrayList<>();
+
+    public FusedWalker(List<? extends AstListener> listeners, boolean timed) {
+        this(listeners, timed, null);
+    }
+
+    public FusedWalker(List<? extends AstListener> listeners, boolean timed, ForkJoinPool pool) {
+        this.listeners = listeners.toArray(new AstListener[0]);
+        this.nanos = timed ? new long[this.listeners.length] : null;
+        this.skippedAt = new int[this.listeners.length];
+        this.pool = pool;
+    }
+
+    public static void walk(ASTNode root, AstListener listener) {
+        FusedWalker walker = new FusedWalker(List.of(listener), false);
+        walker.walk(root);
+        walker.join();
+    }
+
+    /**
+     * Waits for the routine bodies handed to the pool, adds their time to their listeners and tells
+     * every listener the walk is finished.
+     */
+    public void join() {
+        for (RoutineTask routineTask : routineTasks) {
+            routineTask.task.join();
+            if (nanos != null) {
+                for (int i = 0; i < routineTask.listeners.length; i++) {
+                    nanos[routineTask.listeners[i]] += routineTask.walker.nanos(i);
+                }
+            }
+        }
+        routineTasks.clear();
+        for (AstListener listener : listeners) {
+            listener.finished();
+        }
+    }
+
+    /**
+     * Time spent inside each listener's callbacks, in the order the listeners were given; only tracked
+     * for a timed walker.
+     */
+    public long nanos(int listener) {
+        return nanos == null ? 0 : nanos[listener];
+    }
+
+    @Override
+    public void walk(ASTNode node) {
+        boolean statement = nextIsStatement;
+        nextIsStatement = false;
+        if (node == null) {
+            return;
+        }
+        depth++;
+        int listening = 0;
+        for (int i = 0; i < listeners.length; i++) {
+            if (skippedAt[i] == 0) {
+                if (enter(i, node, statement)) {
+                    listening++;
+                } else {
+                    skippedAt[i] = depth;
+                }
+            }
+        }
+        if (listening > 0 && !(node instanceof RoutineDeclarationNode routine && forked(routine, listening))) {
+            node.accept(this);
+        }
+        for (int i = listeners.length - 1; i >= 0; i--) {
+            if (skippedAt[i] == 0) {
+                exit(i, node);
+            } else if (skippedAt[i] == depth) {
+                skippedAt[i] = 0;
+            }
+        }
+        depth--;
+    }
+
+    private boolean forked(RoutineDeclarationNode routine, int listening) {
+        if (pool == null || NestedDeclarationFinder.declaresNested(routine)) {
+            return false;
+        }
+        int[] indices = new int[listening];
+        int count = 0;
+        for (int i = 0; i < listeners.length; i++) {
+            if (skippedAt[i] == 0) {
+                if (!(listeners[i] instanceof ForkablePass)) {
+                    return false;
+                }
+                indices[count++] = i;
+            }
+        }
+        RoutineFork fork = new RoutineFork();
+        List<AstListener> forks = new ArrayList<>();
+        for (int index : indices) {
+            forks.add(((ForkablePass) listeners[index]).fork(fork));
+        }
+        FusedWalker walker = new FusedWalker(forks, nanos != null);
+        // The copies already stand inside the routine, so they walk only its children
+        ForkJoinTask<?> task = pool.submit(() -> {
+            walker.visit(routine);
+        });
+        routineTasks.add(new RoutineTask(task, walker, indices));
+        return true;
+    }
+
+    private boolean enter(int i, ASTNode node, boolean statement) {
+        if (nanos == null) {
+            return listeners[i].enter(node, statement);
+        }
+        long start = System.nanoTime();
+        boolean descend = listeners[i].enter(node, statement);
+        nanos[i] += System.nanoTime() - start;
+        return descend;
+    }
+
+    private void exit(int i, ASTNode node) {
+        if (nanos == null) {
+            listeners[i].exit(node);
+            return;
+        }
+        long start = System.nanoTime();
+        listeners[i].exit(node);
+        nanos[i] += System.nanoTime() - start;
+    }
+
+    private void walkStatements(List<ASTNode> statements) {
+        if (statements != null) {
+            for (ASTNode statement : statements) {
+                nextIsStatement = true;
+                walk(statement);
+            }
+        }
+    }
+
+    private void walkBlock(ASTNode owner, List<ASTNode> statements) {
+        if (statements == null) {
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (skippedAt[i] == 0) {
+                block(i, owner, true);
+            }
+        }
+        walkStatements(statements);
+        for (int i = listeners.length - 1; i >= 0; i--) {
+            if (skippedAt[i] == 0) {
+                block(i, owner, false);
+            }
+        }
+    }
+
+    private void block(int i, ASTNode owner, boolean entering) {
+        long start = nanos == null ? 0 : System.nanoTime();
+        if (entering) {
+            listeners[i].enterBlock(owner);
+        } else {
+            listeners[i].exitBlock(owner);
+        }
+        if (nanos != null) {
+            nanos[i] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Void visit(ProgramNode node) {
+        walkStatements(node.statements);
+        return null;
+    }
+
+    @Override
+    public Void visit(IfStatementNode node) {
+        walk(node.condition);
+        walkBlock(node, node.thenStatements);
+        walkStatements(node.elsifStatements);
+        walkBlock(node, node.elseStatements);
+        return null;
+    }
+
+    @Override
+    public Void visit(WhileLoopNode node) {
+        walk(node.condition);
+        walkBlock(node, node.body);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForLoopNode node) {
+        walk(node.startExpression);
+        walk(node.endExpression);
+        walkBlock(node, node.body);
+        return null;
+    }
+
+    @Override
+    public Void visit(RoutineDeclarationNode node) {
+        walkAll(node.params);
+        walk(node.returnType);
+        walkBlock(node, node.body);
+        return null;
+    }
+
+    private record RoutineTask(ForkJoinTask<?> task, FusedWalker walker, int[] listeners) {
+    }
+
+    private static final class NestedDeclarationFinder extends TreeWalker {
+        private boolean found;
+
+        static boolean declaresNested(RoutineDeclarationNode routine) {
+            NestedDeclarationFinder finder = new NestedDeclarationFinder();
+            finder.walkAll(routine.body);
+            return finder.found;
+        }
+
+        @Override
+        public Void visit(RoutineDeclarationNode node) {
+            found = true;
+            return null;
+        }
+
+        @Override
+        public Void visit(RecordDeclarationNode node) {
+            found = true;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package pass;
+
+import java.util.List;
+
+public sealed interface Pass permits AnalysisPass, TransformPass {
+    String name();
+
+    /**
+     * Names of the passes that must have finished before this one starts.
+     */
+    default List<String> dependsOn() {
+        return List.of();
+    }
+}
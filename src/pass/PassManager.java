@@ -0,0 +1,137 @@
+package pass;
+
+import node.ProgramNode;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs passes in dependency order. Every analysis whose dependencies have finished joins the same
+ * {@link FusedWalker}, so independent analyses cost one traversal between them. Transforms run one at
+ * a time in the order they were added, and an analysis that depends on a transform waits for it.
+ * Given a pool, the walks hand routine bodies to it as described in {@link FusedWalker}.
+ */
+public class PassManager {
+    private final List<Pass> passes = new ArrayList<>();
+    private final boolean timed;
+    private final ForkJoinPool pool;
+    private final List<Timing> timings = new ArrayList<>();
+
+    public PassManager(boolean timed) {
+        this(timed, null);
+    }
+
+    public PassManager(boolean timed, ForkJoinPool pool) {
+        this.timed = timed;
+        this.pool = pool;
+    }
+
+    public PassManager add(Pass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    public ProgramNode run(ProgramNode program) {
+        timings.clear();
+        for (List<Pass> stage : schedule()) {
+            long start = System.nanoTime();
+            if (stage.getFirst() instanceof TransformPass transform) {
+                program = transform.run(program);
+                if (timed) {
+                    timings.add(new Timing(transform.name(), System.nanoTime() - start, List.of()));
+                }
+                continue;
+            }
+            List<AnalysisPass> analyses = new ArrayList<>();
+            for (Pass pass : stage) {
+                analyses.add((AnalysisPass) pass);
+            }
+            FusedWalker walker = new FusedWalker(analyses, timed, pool);
+            walker.walk(program);
+            walker.join();
+            if (timed) {
+                List<Timing> perPass = new ArrayList<>();
+                for (int i = 0; i < analyses.size(); i++) {
+                    perPass.add(new Timing(analyses.get(i).name(), walker.nanos(i), List.of()));
+                }
+                timings.add(new Timing("walk", System.nanoTime() - start, perPass));
+            }
+        }
+        return program;
+    }
+
+    /**
+     * Groups the passes into stages: either one transform, or every analysis that is ready at that point.
+     */
+    List<List<Pass>> schedule() {
+        Set<String> names = new HashSet<>();
+        for (Pass pass : passes) {
+            if (!names.add(pass.name())) {
+                throw new IllegalArgumentException("Duplicate pass: " + pass.name());
+            }
+        }
+        for (Pass pass : passes) {
+            for (String dependency : pass.dependsOn()) {
+                if (!names.contains(dependency)) {
+                    throw new IllegalArgumentException("Pass " + pass.name() + " depends on unknown pass " + dependency);
+                }
+            }
+        }
+
+        List<List<Pass>> stages = new ArrayList<>();
+        Set<String> done = new HashSet<>();
+        List<Pass> remaining = new ArrayList<>(passes);
+        while (!remaining.isEmpty()) {
+            List<Pass> walk = new ArrayList<>();
+            TransformPass nextTransform = null;
+            for (Pass pass : remaining) {
+                if (pass instanceof TransformPass transform) {
+                    // Transforms keep their relative order
+                    if (nextTransform == null) {
+                        nextTransform = transform;
+                    }
+                } else if (done.containsAll(pass.dependsOn())) {
+                    walk.add(pass);
+                }
+            }
+            List<Pass> stage = walk;
+            if (walk.isEmpty()) {
+                if (nextTransform == null || !done.containsAll(nextTransform.dependsOn())) {
+                    throw new IllegalStateException("Pass dependency cycle among " + remaining.stream().map(Pass::name).toList());
+                }
+                stage = List.of(nextTransform);
+            }
+            stages.add(stage);
+            remaining.removeAll(stage);
+            for (Pass pass : stage) {
+                done.add(pass.name());
+            }
+        }
+        return stages;
+    }
+
+    public List<Timing> timings() {
+        return timings;
+    }
+
+    public void printTimings(PrintStream out) {
+        for (Timing timing : timings) {
+            if (timing.passes().isEmpty()) {
+                out.printf("%-28s %8.3f ms%n", timing.name(), timing.nanos() / 1e6);
+                continue;
+            }
+            out.printf("%-28s %8.3f ms%n", timing.name() + " (" + timing.passes().size() + " passes)", timing.nanos() / 1e6);
+            for (Timing pass : timing.passes()) {
+                out.printf("  %-26s %8.3f ms%n", pass.name(), pass.nanos() / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Wall time of one stage. For a walk, {@code passes} holds the time spent in each analysis's callbacks;
+     * the rest of the walk's time is the traversal itself.
+     */
+    public record Timing(String name, long nanos, List<Timing> passes) {
+    }
+}
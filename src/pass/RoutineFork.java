@@ -0,0 +1,21 @@
+package pass;
+
+import diagnostics.Diagnostics;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Shared by the copies of every pass that walk one routine body, so passes reporting to the same
+ * {@link Diagnostics} keep reporting into one segment, in walk order.
+ */
+public final class RoutineFork {
+    private final Map<Diagnostics, Diagnostics> segments = new IdentityHashMap<>();
+
+    RoutineFork() {
+    }
+
+    public Diagnostics diagnostics(Diagnostics parent) {
+        return segments.computeIfAbsent(parent, Diagnostics::fork);
+    }
+}
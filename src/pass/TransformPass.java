@@ -0,0 +1,32 @@
+package pass;
+
+import node.ProgramNode;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A pass that rewrites the program. Transforms run one at a time, in the order they were added.
+ */
+public non-sealed interface TransformPass extends Pass {
+    ProgramNode run(ProgramNode program);
+
+    static TransformPass of(String name, List<String> dependsOn, UnaryOperator<ProgramNode> transform) {
+        return new TransformPass() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public List<String> dependsOn() {
+                return dependsOn;
+            }
+
+            @Override
+            public ProgramNode run(ProgramNode program) {
+                return transform.apply(program);
+            }
+        };
+    }
+}
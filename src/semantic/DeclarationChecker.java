@@ -1,104 +1,124 @@
 package semantic;
 
+import diagnostics.Diagnostics;
+import diagnostics.Transcript;
 import node.*;
+import pass.ForkablePass;
+import pass.FusedWalker;
+import pass.RoutineFork;
 
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
-import java.util.Stack;
 
-public class DeclarationChecker {
-    private final Set<String> functionIdentifiers = new HashSet<>();
-    private final Stack<Set<String>> variableScopes = new Stack<>();
+public class DeclarationChecker implements ForkablePass {
+    private final BitSet functionIdentifiers;
+    private final Diagnostics diagnostics;
+    private final Transcript trace;
+    private final ExpressionChecker expressionChecker = new ExpressionChecker();
+    private int blockDepth;
 
-    public DeclarationChecker() {
-        variableScopes.push(new HashSet<>());
+    public DeclarationChecker(Diagnostics diagnostics) {
+        this(diagnostics, new Transcript(), new BitSet());
+    }
+
+    private DeclarationChecker(Diagnostics diagnostics, Transcript trace, BitSet functionIdentifiers) {
+        this.diagnostics = diagnostics;
+        this.trace = trace;
+        this.functionIdentifiers = functionIdentifiers;
     }
 
     public void checkDeclarations(ProgramNode program) {
-        for (ASTNode statement : program.statements) {
-            checkDeclaration(statement);
-        }
+        FusedWalker.walk(program, new NameResolver());
+        FusedWalker.walk(program, this);
+    }
+
+    @Override
+    public String name() {
+        return "declarations";
+    }
+
+    @Override
+    public List<String> dependsOn() {
+        return List.of("names");
     }
 
-    private void checkDeclaration(ASTNode statement) {
-        switch (statement) {
+    @Override
+    public DeclarationChecker fork(RoutineFork fork) {
+        DeclarationChecker copy = new DeclarationChecker(fork.diagnostics(diagnostics), trace.fork(),
+                (BitSet) functionIdentifiers.clone());
+        copy.blockDepth = blockDepth;
+        return copy;
+    }
+
+    @Override
+    public void finished() {
+        trace.print(System.out);
+    }
+
+    // Expressions are checked from the statement that holds them, so only statements are entered
+    @Override
+    public boolean enter(ASTNode node, boolean statement) {
+        if (!statement) {
+            return node instanceof ProgramNode;
+        }
+        if (blockDepth > 0) {
+            trace.println("Node " + node);
+        }
+        switch (node) {
             case RoutineDeclarationNode routineDeclarationNode -> {
-                System.out.println("Function declared: " + routineDeclarationNode.identifier);
-                functionIdentifiers.add(routineDeclarationNode.identifier);
-                checkRoutineBody(routineDeclarationNode.body);
+                trace.println("Function declared: " + routineDeclarationNode.identifier);
+                functionIdentifiers.set(routineDeclarationNode.symbol);
+                return true;
             }
-            case VarDeclarationNode varDeclarationNode -> addVariable(varDeclarationNode.identifier);
             case PrintStatementNode printStatementNode -> checkPrintStatement(printStatementNode);
             case FunctionCallNode functionCallNode -> checkFunctionCall(functionCallNode);
-            case IfStatementNode ifStatementNode -> checkIfStatement(ifStatementNode);
-            case WhileLoopNode whileLoopNode -> checkWhileLoop(whileLoopNode);
-            case ForLoopNode forLoopNode -> checkForLoop(forLoopNode);
+            case IfStatementNode ifStatementNode -> {
+                checkExpression(ifStatementNode.condition);
+                return true;
+            }
+            case WhileLoopNode whileLoopNode -> {
+                if (whileLoopNode.condition instanceof FunctionCallNode functionCallNode) {
+                    checkFunctionCall(functionCallNode);
+                }
+                return true;
+            }
+            case ForLoopNode forLoopNode -> {
+                return true;
+            }
             case AssignmentNode assignmentNode -> checkAssignment(assignmentNode);
-            case null, default -> {
+            default -> {
             }
         }
+        return false;
     }
 
-    private void checkAssignment(AssignmentNode assignment) {
-        if (assignment.lvalue instanceof IdentifierNode) {
-            String variableName = ((IdentifierNode) assignment.lvalue).name;
-            if (!isVariableDeclared(variableName)) {
-                throw new RuntimeException("Variable " + variableName + " assigned before declaration.");
-            }
-        }
-        checkExpression(assignment.expression);
+    @Override
+    public void enterBlock(ASTNode owner) {
+        blockDepth++;
     }
 
-    private void checkRoutineBody(List<ASTNode> body) {
-        for (ASTNode statement : body) {
-            System.out.println("Node " + statement);
-            checkDeclaration(statement);
-        }
+    @Override
+    public void exitBlock(ASTNode owner) {
+        blockDepth--;
     }
 
-    private void checkIfStatement(IfStatementNode ifStatement) {
-        checkExpression(ifStatement.condition);
-        enterNewScope();
-        checkRoutineBody(ifStatement.thenStatements);
-        exitCurrentScope();
-
-        for (ASTNode elsifStatement : ifStatement.elsifStatements) {
-            enterNewScope();
-            checkDeclaration(elsifStatement);
-            exitCurrentScope();
-        }
-
-        if (ifStatement.elseStatements != null) {
-            enterNewScope();
-            checkRoutineBody(ifStatement.elseStatements);
-            exitCurrentScope();
+    private void checkAssignment(AssignmentNode assignment) {
+        if (assignment.lvalue instanceof IdentifierNode identifier) {
+            if (identifier.declaration == null) {
+                diagnostics.error("Variable " + identifier.name + " assigned before declaration.");
+            }
         }
-    }
-
-    private void checkWhileLoop(WhileLoopNode whileLoop) {
-        enterNewScope();
-        checkDeclaration(whileLoop.condition);
-        checkRoutineBody(whileLoop.body);
-        exitCurrentScope();
-    }
-
-    private void checkForLoop(ForLoopNode forLoop) {
-        enterNewScope();
-        addVariable(forLoop.identifier);
-        checkRoutineBody(forLoop.body);
-        exitCurrentScope();
+        checkExpression(assignment.expression);
     }
 
     private void checkPrintStatement(PrintStatementNode printStatement) {
         ASTNode expression = printStatement.expression;
-        if (expression instanceof IdentifierNode) {
-            String variableName = ((IdentifierNode) expression).name;
-            if (!isVariableDeclared(variableName)) {
-                throw new RuntimeException("Variable " + variableName + " used before declaration.");
+        if (expression instanceof IdentifierNode identifier) {
+            if (identifier.declaration == null) {
+                diagnostics.error("Variable " + identifier.name + " used before declaration.");
             }
         } else if (expression instanceof FunctionCallNode) {
-            System.out.println("Function in print");
+            trace.println("Function in print");
             checkFunctionCall((FunctionCallNode) expression);
         } else {
             checkExpression(expression);
@@ -106,29 +126,20 @@ public class DeclarationChecker {
     }
 
     private void checkExpression(ASTNode expression) {
-        if (expression instanceof IdentifierNode) {
-            String variableName = ((IdentifierNode) expression).name;
-            if (!isVariableDeclared(variableName)) {
-                throw new RuntimeException("Variable " + variableName + " used before declaration.");
-            }
-        } else if (expression instanceof BinaryOperationNode) {
-            checkExpression(((BinaryOperationNode) expression).left);
-            checkExpression(((BinaryOperationNode) expression).right);
-        } else if (expression instanceof FunctionCallNode) {
-            checkFunctionCall((FunctionCallNode) expression);
+        if (expression != null) {
+            expression.accept(expressionChecker);
         }
     }
 
     private void checkFunctionCall(FunctionCallNode functionCall) {
-        if (!functionIdentifiers.contains(functionCall.identifier)) {
-            throw new RuntimeException("Function " + functionCall.identifier + " called before declaration.");
+        if (!functionIdentifiers.get(functionCall.symbol)) {
+            diagnostics.error("Function " + functionCall.identifier + " called before declaration.");
         }
 
         for (ASTNode arg : functionCall.arguments) {
-            if (arg instanceof IdentifierNode) {
-                String variableName = ((IdentifierNode) arg).name;
-                if (!isVariableDeclared(variableName)) {
-                    throw new RuntimeException("Variable " + variableName + " used before declaration in function call.");
+            if (arg instanceof IdentifierNode identifier) {
+                if (identifier.declaration == null) {
+                    diagnostics.error("Variable " + identifier.name + " used before declaration in function call.");
                 }
             } else {
                 checkExpression(arg);
@@ -136,26 +147,31 @@ public class DeclarationChecker {
         }
     }
 
-    private void addVariable(String variableName) {
-        variableScopes.peek().add(variableName);
-    }
-
-    private boolean isVariableDeclared(String variableName) {
-        for (int i = variableScopes.size() - 1; i >= 0; i--) {
-            if (variableScopes.get(i).contains(variableName)) {
-                return true;
+    private class ExpressionChecker implements Visitor<Void> {
+        @Override
+        public Void visit(IdentifierNode identifier) {
+            if (identifier.declaration == null) {
+                diagnostics.error("Variable " + identifier.name + " used before declaration.");
             }
+            return null;
         }
-        return false;
-    }
 
-    private void enterNewScope() {
-        variableScopes.push(new HashSet<>());
-    }
+        @Override
+        public Void visit(BinaryOperationNode binaryOperation) {
+            checkExpression(binaryOperation.left);
+            checkExpression(binaryOperation.right);
+            return null;
+        }
+
+        @Override
+        public Void visit(FunctionCallNode functionCall) {
+            checkFunctionCall(functionCall);
+            return null;
+        }
 
-    private void exitCurrentScope() {
-        if (!variableScopes.isEmpty()) {
-            variableScopes.pop();
+        @Override
+        public Void visitNode(ASTNode node) {
+            return null;
         }
     }
 }
@@ -1,68 +1,87 @@
 package semantic;
 
+import diagnostics.Diagnostics;
 import node.*;
+import pass.ForkablePass;
+import pass.FusedWalker;
+import pass.RoutineFork;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.BitSet;
 
-public class KeyWordUsageChecker {
-    private final Set<String> functionIdentifiers = new HashSet<>();
+public class KeyWordUsageChecker implements ForkablePass {
+    private final BitSet functionIdentifiers;
     private String currentFunction;
     private boolean insideLoop = false;
+    private final Diagnostics diagnostics;
+
+    public KeyWordUsageChecker(Diagnostics diagnostics) {
+        this(diagnostics, new BitSet());
+    }
+
+    private KeyWordUsageChecker(Diagnostics diagnostics, BitSet functionIdentifiers) {
+        this.diagnostics = diagnostics;
+        this.functionIdentifiers = functionIdentifiers;
+    }
 
     public void check(ProgramNode program) {
-        for (ASTNode statement : program.statements) {
-            checkStatement(statement);
-        }
+        FusedWalker.walk(program, this);
+    }
+
+    @Override
+    public String name() {
+        return "keyword-usage";
+    }
+
+    @Override
+    public KeyWordUsageChecker fork(RoutineFork fork) {
+        KeyWordUsageChecker copy = new KeyWordUsageChecker(fork.diagnostics(diagnostics), (BitSet) functionIdentifiers.clone());
+        copy.currentFunction = currentFunction;
+        copy.insideLoop = insideLoop;
+        return copy;
     }
 
-    private void checkStatement(ASTNode statement) {
-        switch (statement) {
+    // Only routine and loop bodies are searched for misplaced keywords
+    @Override
+    public boolean enter(ASTNode node, boolean statement) {
+        if (!statement) {
+            return node instanceof ProgramNode;
+        }
+        switch (node) {
             case RoutineDeclarationNode routineDeclarationNode -> {
                 currentFunction = routineDeclarationNode.identifier;
 
-                functionIdentifiers.add(currentFunction);
-
-                checkRoutineBody(routineDeclarationNode.body);
-                currentFunction = null;
+                functionIdentifiers.set(routineDeclarationNode.symbol);
+                return true;
             }
             case WhileLoopNode whileLoopNode -> {
                 insideLoop = true;
-                checkWhileLoop(whileLoopNode);
-                insideLoop = false;
+                return true;
             }
             case ForLoopNode forLoopNode -> {
                 insideLoop = true;
-                checkForLoop(forLoopNode);
-                insideLoop = false;
+                return true;
             }
             case ReturnStatementNode returnStatementNode -> checkReturnStatement(returnStatementNode);
-            case PrintStatementNode printStatementNode -> {
-
-            }
-            case null, default -> {
+            default -> {
             }
         }
+        return false;
     }
 
-    private void checkRoutineBody(List<ASTNode> body) {
-        for (ASTNode statement : body) {
-            checkStatement(statement);
+    @Override
+    public void exit(ASTNode node) {
+        switch (node) {
+            case RoutineDeclarationNode routineDeclarationNode -> currentFunction = null;
+            case WhileLoopNode whileLoopNode -> insideLoop = false;
+            case ForLoopNode forLoopNode -> insideLoop = false;
+            default -> {
+            }
         }
     }
 
-    private void checkWhileLoop(WhileLoopNode loop) {
-        checkRoutineBody(loop.body);
-    }
-
-    private void checkForLoop(ForLoopNode loop) {
-        checkRoutineBody(loop.body);
-    }
-
     private void checkReturnStatement(ReturnStatementNode returnStatement) {
         if (currentFunction == null) {
-            throw new RuntimeException("Return statement used outside of a function context.");
+            diagnostics.error("Return statement used outside of a function context.");
         }
 
     }
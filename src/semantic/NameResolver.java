@@ -0,0 +1,154 @@
+package semantic;
+
+import node.*;
+import pass.ForkablePass;
+import pass.RoutineFork;
+import symbols.Declaration;
+
+import java.util.Arrays;
+
+/**
+ * Binds every identifier to its {@link Declaration} and gives each declaration a local variable slot.
+ * The scope chain lives in arrays: {@code bound} holds the innermost declaration of each symbol, and
+ * closing a scope pops its declarations and puts back whatever they shadowed. Slots of a closed block
+ * are reused by the next one.
+ */
+public class NameResolver implements ForkablePass {
+    private Declaration[] bound = new Declaration[64];
+    private Declaration[] declared = new Declaration[16];
+    private Declaration[] shadowed = new Declaration[16];
+    private int declaredCount;
+
+    // Per open scope: its first entry in declared and the next free slot when it opened
+    private int[] scopeStarts = new int[8];
+    private int[] slotStarts = new int[8];
+    private int scopeCount;
+
+    private int depth;
+    private int nextSlot;
+
+    @Override
+    public String name() {
+        return "names";
+    }
+
+    @Override
+    public NameResolver fork(RoutineFork fork) {
+        NameResolver copy = new NameResolver();
+        copy.bound = bound.clone();
+        copy.declared = declared.clone();
+        copy.shadowed = shadowed.clone();
+        copy.declaredCount = declaredCount;
+        copy.scopeStarts = scopeStarts.clone();
+        copy.slotStarts = slotStarts.clone();
+        copy.scopeCount = scopeCount;
+        copy.depth = depth;
+        copy.nextSlot = nextSlot;
+        return copy;
+    }
+
+    @Override
+    public boolean enter(ASTNode node, boolean statement) {
+        switch (node) {
+            case IdentifierNode identifier -> {
+                identifier.declaration = identifier.symbol < bound.length ? bound[identifier.symbol] : null;
+                return false;
+            }
+            case ArrayDeclarationNode array -> {
+                array.declaration = declare(Declaration.Kind.VARIABLE, array.symbol, 1);
+                return false;
+            }
+            case ParamNode param -> {
+                param.declaration = declare(Declaration.Kind.PARAMETER, param.symbol, slotSize(param.type));
+                return false;
+            }
+            case RoutineDeclarationNode routine -> {
+                // A routine gets a fresh frame; its parameters live in the scope around the body
+                openScope();
+                depth++;
+                nextSlot = 0;
+                return true;
+            }
+            case RecordDeclarationNode record -> {
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void exit(ASTNode node) {
+        switch (node) {
+            // Declared after its initializer, so `var x is x + 1` reads the outer x
+            case VarDeclarationNode var -> var.declaration = declare(Declaration.Kind.VARIABLE, var.symbol, slotSize(var.type));
+            case RoutineDeclarationNode routine -> {
+                depth--;
+                closeScope();
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void enterBlock(ASTNode owner) {
+        openScope();
+        if (owner instanceof ForLoopNode forLoop) {
+            forLoop.declaration = declare(Declaration.Kind.LOOP_VARIABLE, forLoop.symbol, 1);
+        }
+    }
+
+    @Override
+    public void exitBlock(ASTNode owner) {
+        closeScope();
+    }
+
+    private Declaration declare(Declaration.Kind kind, int symbol, int size) {
+        Declaration declaration = new Declaration(kind, symbol, depth, nextSlot, size);
+        nextSlot += size;
+        if (declaredCount == declared.length) {
+            declared = Arrays.copyOf(declared, declaredCount * 2);
+            shadowed = Arrays.copyOf(shadowed, declaredCount * 2);
+        }
+        if (symbol >= bound.length) {
+            bound = Arrays.copyOf(bound, Math.max(symbol + 1, bound.length * 2));
+        }
+        declared[declaredCount] = declaration;
+        shadowed[declaredCount] = bound[symbol];
+        declaredCount++;
+        bound[symbol] = declaration;
+        return declaration;
+    }
+
+    private void openScope() {
+        if (scopeCount == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopeCount * 2);
+            slotStarts = Arrays.copyOf(slotStarts, scopeCount * 2);
+        }
+        scopeStarts[scopeCount] = declaredCount;
+        slotStarts[scopeCount] = nextSlot;
+        scopeCount++;
+    }
+
+    private void closeScope() {
+        scopeCount--;
+        int start = scopeStarts[scopeCount];
+        for (int i = declaredCount - 1; i >= start; i--) {
+            bound[declared[i].symbol] = shadowed[i];
+            declared[i] = null;
+            shadowed[i] = null;
+        }
+        declaredCount = start;
+        nextSlot = slotStarts[scopeCount];
+    }
+
+    // Reals take two slots; an untyped variable gets two in case its value is a real
+    private static int slotSize(ASTNode type) {
+        if (type instanceof TypeNode typeNode) {
+            return typeNode.typeName.equals("real") ? 2 : 1;
+        }
+        return type instanceof ArrayTypeNode ? 1 : 2;
+    }
+}
@@ -0,0 +1,237 @@
+package semantic;
+
+import diagnostics.Diagnostics;
+import node.*;
+import pass.ForkablePass;
+import pass.RoutineFork;
+import symbols.Declaration;
+import symbols.SymbolMap;
+import tokens.TokenType;
+import types.ArrayType;
+import types.PrimitiveType;
+import types.RecordType;
+import types.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the type of every expression bottom-up and stores it in {@link ASTNode#resolvedType}, so code
+ * generation reads types instead of working them out again.
+ */
+public class TypeChecker implements ForkablePass {
+    private final SymbolMap<RecordType> records;
+    private final SymbolMap<Type> returnTypes;
+    private final Diagnostics diagnostics;
+    private final List<String> dependsOn;
+
+    /**
+     * {@code rewrites} names the passes that rewrite the tree before it is checked.
+     */
+    public TypeChecker(Diagnostics diagnostics, List<String> rewrites) {
+        this.diagnostics = diagnostics;
+        this.records = new SymbolMap<>();
+        this.returnTypes = new SymbolMap<>();
+        List<String> dependsOn = new ArrayList<>(rewrites);
+        dependsOn.add("names");
+        this.dependsOn = List.copyOf(dependsOn);
+    }
+
+    private TypeChecker(TypeChecker parent, Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        this.records = parent.records.copy();
+        this.returnTypes = parent.returnTypes.copy();
+        this.dependsOn = parent.dependsOn;
+    }
+
+    // The routine's own return type is already registered, so recursive calls resolve
+    @Override
+    public TypeChecker fork(RoutineFork fork) {
+        return new TypeChecker(this, fork.diagnostics(diagnostics));
+    }
+
+    @Override
+    public String name() {
+        return "types";
+    }
+
+    @Override
+    public List<String> dependsOn() {
+        return dependsOn;
+    }
+
+    @Override
+    public boolean enter(ASTNode node, boolean statement) {
+        switch (node) {
+            case RecordDeclarationNode record -> {
+                // Registered before its fields so a field can refer to the record itself
+                RecordType type = new RecordType(record.identifier);
+                records.put(record.symbol, type);
+                for (VarDeclarationNode field : record.fields) {
+                    Type fieldType = resolve(field.type);
+                    annotate(field, fieldType);
+                    type.addField(field.identifier, fieldType);
+                }
+                annotate(record, type);
+                return false;
+            }
+            case RoutineDeclarationNode routine -> {
+                Type returnType = routine.returnType == null ? null : resolve(routine.returnType);
+                returnTypes.put(routine.symbol, returnType);
+                annotate(routine, returnType);
+                return true;
+            }
+            case ParamNode param -> {
+                Type type = resolve(param.type);
+                annotate(param, type);
+                declare(param.declaration, type);
+                return false;
+            }
+            case ArrayDeclarationNode array -> {
+                Type element = resolve(array.type);
+                Type type = element == null ? null : new ArrayType(element, array.size);
+                annotate(array, type);
+                declare(array.declaration, type);
+                return false;
+            }
+            case TypeNode typeNode -> {
+                return false;
+            }
+            case ArrayTypeNode arrayTypeNode -> {
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void exit(ASTNode node) {
+        switch (node) {
+            case LiteralNode literal -> annotate(literal, literalType(literal.value));
+            case IdentifierNode identifier ->
+                    annotate(identifier, identifier.declaration == null ? null : identifier.declaration.type);
+            case BinaryOperationNode binary -> annotate(binary, binaryType(binary));
+            case UnaryOperationNode unary -> annotate(unary,
+                    unary.operator == TokenType.NOT ? PrimitiveType.BOOLEAN : unary.operand.resolvedType);
+            case FunctionCallNode call -> annotate(call, returnTypes.get(call.symbol));
+            case LValueNode lvalue -> annotate(lvalue, lvalueType(lvalue));
+            case VarDeclarationNode var -> {
+                Type type = var.type == null ? typeOf(var.expression) : resolve(var.type);
+                annotate(var, type);
+                declare(var.declaration, type);
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void enterBlock(ASTNode owner) {
+        if (owner instanceof ForLoopNode forLoop) {
+            declare(forLoop.declaration, PrimitiveType.INTEGER);
+        }
+    }
+
+    private Type resolve(ASTNode typeNode) {
+        return switch (typeNode) {
+            case TypeNode type -> {
+                PrimitiveType primitive = PrimitiveType.named(type.typeName);
+                if (primitive != null) {
+                    yield primitive;
+                }
+                RecordType record = records.get(type.symbol);
+                if (record == null) {
+                    diagnostics.error("Unknown type " + type.typeName + ".");
+                }
+                yield record;
+            }
+            case ArrayTypeNode array -> {
+                Type element = PrimitiveType.named(array.name);
+                if (element == null) {
+                    diagnostics.error("Unknown type " + array.name + ".");
+                    yield null;
+                }
+                yield new ArrayType(element, array.size);
+            }
+            case null, default -> null;
+        };
+    }
+
+    private Type literalType(Object value) {
+        return switch (value) {
+            case Integer integer -> PrimitiveType.INTEGER;
+            case Double real -> PrimitiveType.REAL;
+            case Boolean bool -> PrimitiveType.BOOLEAN;
+            case String string -> PrimitiveType.STRING;
+            case TypeNode type -> records.get(type.symbol);
+            default -> null;
+        };
+    }
+
+    private Type binaryType(BinaryOperationNode binary) {
+        Type left = typeOf(binary.left);
+        Type right = typeOf(binary.right);
+        switch (binary.operator) {
+            case PLUS, MINUS, STAR, SLASH, MOD -> {
+                if (left == null || right == null) {
+                    return null;
+                }
+                if (!left.isNumeric() || !right.isNumeric()) {
+                    operandError(binary, left, right);
+                    return null;
+                }
+                return left == PrimitiveType.REAL || right == PrimitiveType.REAL ? PrimitiveType.REAL : PrimitiveType.INTEGER;
+            }
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> {
+                if (left != null && right != null && (!left.isNumeric() || !right.isNumeric())) {
+                    operandError(binary, left, right);
+                }
+                return PrimitiveType.BOOLEAN;
+            }
+            case AND, OR -> {
+                if (left != null && right != null && (left != PrimitiveType.BOOLEAN || right != PrimitiveType.BOOLEAN)) {
+                    operandError(binary, left, right);
+                }
+                return PrimitiveType.BOOLEAN;
+            }
+            default -> {
+                return PrimitiveType.BOOLEAN;
+            }
+        }
+    }
+
+    private void operandError(BinaryOperationNode binary, Type left, Type right) {
+        diagnostics.error("Operator " + binary.operator + " cannot be applied to " + left + " and " + right + ".");
+    }
+
+    private Type lvalueType(LValueNode lvalue) {
+        Type base = typeOf(lvalue.base);
+        if (lvalue.field != null) {
+            if (base instanceof RecordType record) {
+                Type field = record.field(lvalue.field);
+                if (field == null) {
+                    diagnostics.error("Record " + record.name() + " has no field " + lvalue.field + ".");
+                }
+                return field;
+            }
+            return null;
+        }
+        return base instanceof ArrayType array ? array.element() : null;
+    }
+
+    private static Type typeOf(ASTNode node) {
+        return node == null ? null : node.resolvedType;
+    }
+
+    private static void annotate(ASTNode node, Type type) {
+        node.resolvedType = type;
+    }
+
+    private static void declare(Declaration declaration, Type type) {
+        if (declaration != null) {
+            declaration.type = type;
+        }
+    }
+}
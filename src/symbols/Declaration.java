@@ -0,0 +1,36 @@
+package symbols;
+
+import types.Type;
+
+/**
+ * A variable, parameter or loop variable, bound to every identifier that refers to it by the name
+ * resolver. {@code depth} is the nesting depth of the frame that owns it, 0 for the program's main
+ * method and 1 inside a routine; {@code slot} is its local variable index in that frame.
+ */
+public final class Declaration {
+    public enum Kind {
+        VARIABLE, PARAMETER, LOOP_VARIABLE
+    }
+
+    public final Kind kind;
+    public final int symbol;
+    public final int depth;
+    public final int slot;
+    public final int size;
+    /**
+     * Set by the type checker.
+     */
+    public Type type;
+
+    public Declaration(Kind kind, int symbol, int depth, int slot, int size) {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.depth = depth;
+        this.slot = slot;
+        this.size = size;
+    }
+
+    public String name() {
+        return SymbolTable.name(symbol);
+    }
+}
@@ -0,0 +1,88 @@
+package symbols;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing name table handing out dense int ids in order of first occurrence. Not thread
+ * safe; {@link SymbolTable} wraps the process-wide instance.
+ */
+public final class Interner {
+    private String[] names = new String[256];
+    private int[] hashes = new int[256];
+    // Open-addressing slots holding id + 1, 0 marks an empty slot
+    private int[] slots = new int[512];
+    private int size = 0;
+
+    /**
+     * Interns {@code source[start, end)} without allocating a String when the name is already known.
+     */
+    public int intern(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return add(source.subSequence(start, end).toString(), hash, slot);
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && contentEquals(names[id], source, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean contentEquals(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package symbols;
+
+import java.util.Arrays;
+
+/**
+ * Map from symbol id to value, stored as an array indexed by the id.
+ */
+public class SymbolMap<V> {
+    private Object[] values = new Object[16];
+
+    @SuppressWarnings("unchecked")
+    public V get(int symbol) {
+        return symbol >= 0 && symbol < values.length ? (V) values[symbol] : null;
+    }
+
+    public boolean containsKey(int symbol) {
+        return get(symbol) != null;
+    }
+
+    /**
+     * A copy that later puts on either map do not affect.
+     */
+    public SymbolMap<V> copy() {
+        SymbolMap<V> copy = new SymbolMap<>();
+        copy.values = values.clone();
+        return copy;
+    }
+
+    public void put(int symbol, V value) {
+        if (symbol >= values.length) {
+            values = Arrays.copyOf(values, Math.max(symbol + 1, values.length * 2));
+        }
+        values[symbol] = value;
+    }
+}
@@ -0,0 +1,34 @@
+package symbols;
+
+/**
+ * Global identifier interning table. Each distinct name gets a dense int id, starting from 0,
+ * that stays valid for the lifetime of the compiler process, so every phase can key its data
+ * by id instead of rehashing the name.
+ */
+public final class SymbolTable {
+    public static final int NO_SYMBOL = -1;
+
+    private static final Interner names = new Interner();
+
+    private SymbolTable() {
+    }
+
+    public static int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Interns {@code source[start, end)} without allocating a String when the name is already known.
+     */
+    public static synchronized int intern(CharSequence source, int start, int end) {
+        return names.intern(source, start, end);
+    }
+
+    public static synchronized String name(int id) {
+        return names.name(id);
+    }
+
+    public static synchronized int size() {
+        return names.size();
+    }
+}
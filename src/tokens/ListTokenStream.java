@@ -0,0 +1,25 @@
+package tokens;
+
+import java.util.List;
+
+public class ListTokenStream implements TokenStream {
+    private final List<Token> tokens;
+    private int current;
+
+    public ListTokenStream(List<Token> tokens) {
+        this.tokens = tokens;
+        this.current = 0;
+    }
+
+    @Override
+    public Token peek(int offset) {
+        return tokens.get(Math.min(current + offset, tokens.size() - 1));
+    }
+
+    @Override
+    public Token next() {
+        Token token = peek(0);
+        if (current < tokens.size() - 1) current++;
+        return token;
+    }
+}
@@ -0,0 +1,56 @@
+package tokens;
+
+/**
+ * Pulls tokens from {@link #produce()} on demand and keeps at most {@code lookahead} of them
+ * in a ring buffer, so memory is bounded by the lookahead rather than by the input size.
+ */
+public abstract class LookaheadTokenStream implements TokenStream {
+    private final Token[] ring;
+    private int head;
+    private int count;
+    private Token eof;
+
+    protected LookaheadTokenStream(int lookahead) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must be at least 1");
+        }
+        this.ring = new Token[lookahead];
+    }
+
+    /**
+     * Produces the next token of the input; not called again once it has returned the EOF token.
+     */
+    protected abstract Token produce();
+
+    @Override
+    public Token peek(int offset) {
+        if (offset >= ring.length) {
+            throw new IllegalArgumentException("Lookahead " + offset + " exceeds buffer size " + ring.length);
+        }
+        while (count <= offset) {
+            ring[(head + count) % ring.length] = pull();
+            count++;
+        }
+        return ring[(head + offset) % ring.length];
+    }
+
+    @Override
+    public Token next() {
+        Token token = peek(0);
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        count--;
+        return token;
+    }
+
+    private Token pull() {
+        if (eof != null) {
+            return eof;
+        }
+        Token token = produce();
+        if (token.type == TokenType.EOF) {
+            eof = token;
+        }
+        return token;
+    }
+}
@@ -1,14 +1,73 @@
 package tokens;
 
+import symbols.SymbolTable;
+
 public class Token {
-    public TokenType type;
-    TokenType commonType;
-    public String text;
-    Span span;
+    public final TokenType type;
+    private final CharSequence source;
+    private final int sourceOffset;
+    private final int start, end, line;
+    private final int symbol;
+    private String text;
 
-    public Token(Span span, TokenType type, String text) {
-        this.span = span;
+    /**
+     * Creates a token whose text is sliced from {@code source} only when {@link #text()} is called.
+     */
+    public Token(TokenType type, CharSequence source, int start, int end, int line, int symbol) {
         this.type = type;
+        this.source = source;
+        this.sourceOffset = 0;
+        this.start = start;
+        this.end = end;
+        this.line = line;
+        this.symbol = symbol;
+    }
+
+    public Token(TokenType type, String text, int start, int line, int symbol) {
+        this.type = type;
+        this.source = text;
+        this.sourceOffset = start;
+        this.start = start;
+        this.end = start + text.length();
+        this.line = line;
+        this.symbol = symbol;
         this.text = text;
     }
-}
\ No newline at end of file
+
+    public String text() {
+        if (text == null) {
+            text = symbol != SymbolTable.NO_SYMBOL
+                    ? SymbolTable.name(symbol)
+                    : source.subSequence(start - sourceOffset, end - sourceOffset).toString();
+        }
+        return text;
+    }
+
+    /**
+     * Interned id of an identifier token, {@link SymbolTable#NO_SYMBOL} for every other token type.
+     */
+    public int symbol() {
+        return symbol;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int line() {
+        return line;
+    }
+
+    public Span span() {
+        return new Span(line, start, end);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s '%s' (%s)", type, text(), span());
+    }
+}
@@ -0,0 +1,200 @@
+package tokens;
+
+import symbols.SymbolTable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Token storage as parallel int arrays (type ordinal, start offset, end offset, line, symbol id),
+ * 20 bytes per token. Token text is not copied; it is sliced from the source when asked for.
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence source;
+    private int[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] symbols;
+    private int size;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, Math.max(16, source.length() / 4));
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        this.types = new int[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.lines = new int[capacity];
+        this.symbols = new int[capacity];
+    }
+
+    public void add(TokenType type, int start, int end, int line, int symbol) {
+        ensureCapacity(size + 1);
+        types[size] = type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        symbols[size] = symbol;
+        size++;
+    }
+
+    /**
+     * Replaces tokens {@code [from, to)} with the tokens of {@code replacement} and moves the tokens
+     * after them by {@code offsetDelta} characters and {@code lineDelta} lines.
+     */
+    public Edit splice(int from, int to, TokenBuffer replacement, int offsetDelta, int lineDelta) {
+        int inserted = replacement.size;
+        int tail = size - to;
+        ensureCapacity(from + inserted + tail);
+        for (int[] column : new int[][]{types, starts, ends, lines, symbols}) {
+            System.arraycopy(column, to, column, from + inserted, tail);
+        }
+        System.arraycopy(replacement.types, 0, types, from, inserted);
+        System.arraycopy(replacement.starts, 0, starts, from, inserted);
+        System.arraycopy(replacement.ends, 0, ends, from, inserted);
+        System.arraycopy(replacement.lines, 0, lines, from, inserted);
+        System.arraycopy(replacement.symbols, 0, symbols, from, inserted);
+        size = from + inserted + tail;
+        for (int i = from + inserted; i < size; i++) {
+            starts[i] += offsetDelta;
+            ends[i] += offsetDelta;
+            lines[i] += lineDelta;
+        }
+        return new Edit(from, to, from + inserted);
+    }
+
+    /**
+     * Index of the first token ending at or after {@code offset}.
+     */
+    public int indexEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            capacity = Math.max(capacity, Math.max(16, types.length * 2));
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+    }
+
+    /**
+     * Releases unused capacity once lexing is finished.
+     */
+    public void trimToSize() {
+        types = Arrays.copyOf(types, size);
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+        lines = Arrays.copyOf(lines, size);
+        symbols = Arrays.copyOf(symbols, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int symbol(int index) {
+        return symbols[index];
+    }
+
+    public String text(int index) {
+        if (symbols[index] != SymbolTable.NO_SYMBOL) {
+            return SymbolTable.name(symbols[index]);
+        }
+        return source.subSequence(starts[index], ends[index]).toString();
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), source, starts[index], ends[index], lines[index], symbols[index]);
+    }
+
+    public List<Token> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Token get(int index) {
+                return token(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Streams the buffered tokens, materializing a {@link Token} only once it enters the lookahead window.
+     */
+    public TokenStream stream(int lookahead) {
+        return stream(0, size, lookahead);
+    }
+
+    /**
+     * Streams tokens {@code [from, to)} followed by an EOF token placed where token {@code to} starts.
+     * UNKNOWN tokens, which only a lexer without diagnostics keeps, are left out.
+     */
+    public TokenStream stream(int from, int to, int lookahead) {
+        return new LookaheadTokenStream(lookahead) {
+            private int next = from;
+
+            @Override
+            protected Token produce() {
+                while (next < to && types[next] == TokenType.UNKNOWN.ordinal()) next++;
+                if (next < to) {
+                    return token(next++);
+                }
+                if (to < size && type(to) == TokenType.EOF) {
+                    return token(to);
+                }
+                int offset = to < size ? starts[to] : source.length();
+                int line = to < size ? lines[to] : lines[size - 1];
+                return new Token(TokenType.EOF, source, offset, offset, line, SymbolTable.NO_SYMBOL);
+            }
+        };
+    }
+
+    /**
+     * Tokens {@code [from, oldTo)} of the buffer before a splice became {@code [from, newTo)} after it.
+     */
+    public record Edit(int from, int oldTo, int newTo) {
+    }
+}
@@ -0,0 +1,11 @@
+package tokens;
+
+public interface TokenStream {
+    /**
+     * Returns the token {@code offset} positions ahead without consuming it; 0 is the next token.
+     * Once the end of input is reached every further position yields the EOF token.
+     */
+    Token peek(int offset);
+
+    Token next();
+}
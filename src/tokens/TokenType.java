@@ -17,7 +17,7 @@ public enum TokenType {
     // End of file
     EOF,
 
-    UNKNOWN, WHITESPACE, IN, RANGE_OPERATOR
+    UNKNOWN, IN, RANGE_OPERATOR
 }
 
 
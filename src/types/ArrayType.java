@@ -0,0 +1,13 @@
+package types;
+
+public record ArrayType(Type element, int size) implements Type {
+    @Override
+    public String descriptor() {
+        return "[" + element.descriptor();
+    }
+
+    @Override
+    public String toString() {
+        return "array[" + size + "] " + element;
+    }
+}
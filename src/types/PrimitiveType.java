@@ -0,0 +1,43 @@
+package types;
+
+public enum PrimitiveType implements Type {
+    INTEGER("integer", "I"),
+    REAL("real", "D"),
+    BOOLEAN("boolean", "Z"),
+    STRING("string", "Ljava/lang/String;");
+
+    private final String typeName;
+    private final String descriptor;
+
+    PrimitiveType(String typeName, String descriptor) {
+        this.typeName = typeName;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * The primitive spelled {@code typeName} in source, or null for any other name.
+     */
+    public static PrimitiveType named(String typeName) {
+        for (PrimitiveType type : values()) {
+            if (type.typeName.equals(typeName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String descriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return this == INTEGER || this == REAL;
+    }
+
+    @Override
+    public String toString() {
+        return typeName;
+    }
+}
@@ -0,0 +1,43 @@
+package types;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class RecordType implements Type {
+    private final String name;
+    private final Map<String, Type> fields = new LinkedHashMap<>();
+
+    public RecordType(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void addField(String fieldName, Type type) {
+        fields.put(fieldName, type);
+    }
+
+    public Type field(String fieldName) {
+        return fields.get(fieldName);
+    }
+
+    /**
+     * Fields in declaration order.
+     */
+    public Map<String, Type> fields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    @Override
+    public String descriptor() {
+        return "L" + name + ";";
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,16 @@
+package types;
+
+/**
+ * Resolved type of an expression or declaration. Primitives are enum constants and record types are
+ * interned per program, so types compare by identity.
+ */
+public sealed interface Type permits PrimitiveType, RecordType, ArrayType {
+    /**
+     * JVM field descriptor, e.g. {@code I} or {@code LComplex;}.
+     */
+    String descriptor();
+
+    default boolean isNumeric() {
+        return false;
+    }
+}